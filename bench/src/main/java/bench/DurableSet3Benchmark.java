@@ -0,0 +1,122 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * JMH benchmark of update throughput in {@code DurableSet3} under several
+ * group-commit policies, against the in-memory {@code Set3a} it wraps. Each
+ * operation toggles a random key, so the sets keep about half of the key
+ * range.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DurableSet3Benchmark {
+
+    /**
+     * Range of the keys.
+     */
+    private static final int KEYS = 1 << 20;
+
+    /**
+     * Number of pending log bytes forcing a sync; 1 syncs every update.
+     */
+    @Param({ "1", "65536", "1048576" })
+    private int syncBytes;
+
+    /**
+     * Directory of the durable set.
+     */
+    private Path directory;
+
+    /**
+     * Set under test.
+     */
+    private DurableSet3<Integer> durable;
+
+    /**
+     * Baseline.
+     */
+    private Set3a<Integer> memory;
+
+    /**
+     * Opens an empty durable set in a fresh directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("DurableSet3Benchmark");
+        this.durable = DurableSet3.open(this.directory, Set3aCodec.integers(),
+                this.syncBytes, 10, 64 << 20);
+        this.memory = new Set3a<Integer>();
+    }
+
+    /**
+     * Closes the durable set and deletes its directory.
+     *
+     * @throws IOException
+     *             if the files cannot be closed or deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.durable.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                p.toFile().delete();
+            });
+        }
+    }
+
+    /**
+     * Toggles a random key in {@code DurableSet3}.
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    @Benchmark
+    public void toggleDurable() throws IOException {
+        Integer x = ThreadLocalRandom.current().nextInt(KEYS);
+        if (this.durable.contains(x)) {
+            this.durable.remove(x);
+        } else {
+            this.durable.add(x);
+        }
+    }
+
+    /**
+     * Toggles a random key in {@code Set3a}.
+     */
+    @Benchmark
+    public void toggleMemory() {
+        Integer x = ThreadLocalRandom.current().nextInt(KEYS);
+        if (this.memory.contains(x)) {
+            this.memory.remove(x);
+        } else {
+            this.memory.add(x);
+        }
+    }
+
+}
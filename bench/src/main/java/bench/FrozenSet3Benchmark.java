@@ -0,0 +1,152 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of random lookups in the frozen Eytzinger-layout sets against
+ * the AVL trees they are made from: {@code Set3a} and {@code FrozenSet3} on
+ * {@code Integer}s, and {@code IntSet3} and {@code FrozenIntSet3} on
+ * {@code int}s. Each set holds the even integers in [0, 2 * size), and half
+ * of the probes miss.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FrozenSet3Benchmark {
+
+    /**
+     * Number of precomputed probes; a power of two.
+     */
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * Number of elements in the sets.
+     */
+    @Param({ "1000", "100000", "10000000" })
+    private int size;
+
+    /**
+     * AVL tree of {@code Integer}s.
+     */
+    private Set3a<Integer> tree;
+
+    /**
+     * Frozen copy of {@code tree}.
+     */
+    private FrozenSet3<Integer> frozen;
+
+    /**
+     * AVL tree of {@code int}s.
+     */
+    private IntSet3 intTree;
+
+    /**
+     * Frozen copy of {@code intTree}.
+     */
+    private FrozenIntSet3 frozenInt;
+
+    /**
+     * Keys to probe, boxed once so boxing is not measured.
+     */
+    private Integer[] probes;
+
+    /**
+     * Position of the next probe.
+     */
+    private int next;
+
+    /**
+     * Builds the sets and the probes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int n = this.size;
+        this.tree = new Set3a<Integer>();
+        this.intTree = new IntSet3();
+        for (int i = 0; i < n; i++) {
+            this.tree.add(2 * i);
+            this.intTree.add(2 * i);
+        }
+        this.frozen = this.tree.toFrozen();
+        this.frozenInt = this.intTree.toFrozen();
+        this.probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            this.probes[i] = random.nextInt(2 * n);
+        }
+        this.next = 0;
+    }
+
+    /**
+     * Returns the next key to probe.
+     *
+     * @return the key
+     */
+    private Integer probe() {
+        Integer result = this.probes[this.next];
+        this.next = (this.next + 1) & (PROBES - 1);
+        return result;
+    }
+
+    /**
+     * Lookup in the AVL tree of {@code Integer}s.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean set3a() {
+        return this.tree.contains(this.probe());
+    }
+
+    /**
+     * Lookup in the frozen set of {@code Integer}s.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean frozenSet3() {
+        return this.frozen.contains(this.probe());
+    }
+
+    /**
+     * Lookup in the AVL tree of {@code int}s.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean intSet3() {
+        return this.intTree.contains(this.probe());
+    }
+
+    /**
+     * Lookup in the frozen set of {@code int}s.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean frozenIntSet3() {
+        return this.frozenInt.contains(this.probe());
+    }
+
+}
@@ -0,0 +1,420 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JMH benchmark of the kernel and bulk operations of {@code Set3a} and of the
+ * B+-tree {@code Set3b}, with {@code Set1L} as a baseline. The set under test
+ * holds the even integers in [0, 2 * size), inserted in the order given by
+ * the key distribution, which also drives the sequence of keys probed (hits
+ * are even, misses odd).
+ *
+ * <p>
+ * Build the module in {@code bench/} with {@code mvn package}, then run
+ * {@code java -jar target/benchmarks.jar Set3aBenchmark -prof gc}, or
+ * {@link #main(String[])}, to get allocation and GC figures from the
+ * {@code gc} profiler with every result. The full parameter matrix is large,
+ * and {@code Set1L} takes linear time per lookup; restrict it with
+ * {@code -p}, e.g. {@code -p implementation=Set1L -p size=1000,10000}. To
+ * compare cache misses per operation, add {@code -prof perfnorm} on Linux.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Set3aBenchmark {
+
+    /**
+     * Orders in which keys are inserted and probed.
+     */
+    public enum Distribution {
+        /**
+         * Uniformly random.
+         */
+        RANDOM,
+        /**
+         * Increasing.
+         */
+        SORTED,
+        /**
+         * Decreasing.
+         */
+        REVERSE,
+        /**
+         * Alternately from the low and the high end.
+         */
+        ZIGZAG,
+        /**
+         * Random insertion; probes Zipf-distributed over the keys, the
+         * smallest keys being the most frequent.
+         */
+        ZIPFIAN
+    }
+
+    /**
+     * Number of precomputed probes; a power of two.
+     */
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * Exponent of the Zipf distribution.
+     */
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * Seed of the pseudo-random generator, so that runs are comparable.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Implementation under test.
+     */
+    @Param({ "Set3a", "Set3b", "Set1L" })
+    private String implementation;
+
+    /**
+     * Number of elements in the set.
+     */
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    private int size;
+
+    /**
+     * Insertion and probe order.
+     */
+    @Param({ "RANDOM", "SORTED", "REVERSE", "ZIGZAG", "ZIPFIAN" })
+    private Distribution distribution;
+
+    /**
+     * Set under test.
+     */
+    private Set<Integer> set;
+
+    /**
+     * Indices in [0, size) of the keys to probe.
+     */
+    private int[] probes;
+
+    /**
+     * Position of the next probe.
+     */
+    private int next;
+
+    /**
+     * Returns a new empty set of the implementation under test.
+     *
+     * @return the set
+     */
+    private Set<Integer> newSet() {
+        Set<Integer> result;
+        if (this.implementation.equals("Set3a")) {
+            result = new Set3a<Integer>();
+        } else if (this.implementation.equals("Set3b")) {
+            result = new Set3b<Integer>();
+        } else {
+            result = new Set1L<Integer>();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@code i}-th index of the sequence visiting [0, n)
+     * alternately from the low and the high end.
+     *
+     * @param i
+     *            the position in the sequence
+     * @param n
+     *            the length of the sequence
+     * @return the index
+     * @requires 0 <= i < n
+     */
+    private static int zigzag(int i, int n) {
+        int result = i / 2;
+        if (i % 2 == 1) {
+            result = n - 1 - result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a Zipf-distributed index in [0, n), by inverting the
+     * continuous approximation of the distribution.
+     *
+     * @param random
+     *            the source of randomness
+     * @param n
+     *            the number of indices
+     * @return the index
+     */
+    private static int zipf(Random random, int n) {
+        double e = 1 - ZIPF_EXPONENT;
+        double u = random.nextDouble();
+        double x = Math.pow((Math.pow(n, e) - 1) * u + 1, 1 / e);
+        return Math.min(n - 1, (int) x - 1);
+    }
+
+    /**
+     * Builds the set and the probes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        int n = this.size;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            switch (this.distribution) {
+                case REVERSE:
+                    order[i] = n - 1 - i;
+                    break;
+                case ZIGZAG:
+                    order[i] = zigzag(i, n);
+                    break;
+                default:
+                    order[i] = i;
+                    break;
+            }
+        }
+        if (this.distribution == Distribution.RANDOM
+                || this.distribution == Distribution.ZIPFIAN) {
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }
+        this.set = this.newSet();
+        for (int i : order) {
+            this.set.add(2 * i);
+        }
+        /*
+         * Ordered distributions stride across the whole key range, so large
+         * sets are not probed only at one end.
+         */
+        this.probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int spread = (int) ((long) i * n / PROBES);
+            switch (this.distribution) {
+                case RANDOM:
+                    this.probes[i] = random.nextInt(n);
+                    break;
+                case ZIPFIAN:
+                    this.probes[i] = zipf(random, n);
+                    break;
+                case SORTED:
+                    this.probes[i] = spread;
+                    break;
+                case REVERSE:
+                    this.probes[i] = n - 1 - spread;
+                    break;
+                default:
+                    this.probes[i] = zigzag(spread, n);
+                    break;
+            }
+        }
+        this.next = 0;
+    }
+
+    /**
+     * Returns the index of the next key to probe.
+     *
+     * @return the index
+     */
+    private int probe() {
+        int result = this.probes[this.next];
+        this.next = (this.next + 1) & (PROBES - 1);
+        return result;
+    }
+
+    /**
+     * Successful lookup.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean containsHit() {
+        return this.set.contains(2 * this.probe());
+    }
+
+    /**
+     * Unsuccessful lookup.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean containsMiss() {
+        return this.set.contains(2 * this.probe() + 1);
+    }
+
+    /**
+     * Addition of an absent key, followed by its removal so that the size
+     * stays fixed.
+     *
+     * @return the set
+     */
+    @Benchmark
+    public Set<Integer> add() {
+        Integer x = 2 * this.probe() + 1;
+        this.set.add(x);
+        this.set.remove(x);
+        return this.set;
+    }
+
+    /**
+     * Removal of a present key, followed by adding it back so that the size
+     * stays fixed.
+     *
+     * @return the key removed
+     */
+    @Benchmark
+    public Integer remove() {
+        Integer x = this.set.remove(2 * this.probe());
+        this.set.add(x);
+        return x;
+    }
+
+    /**
+     * Removal of an arbitrary element, followed by adding it back so that
+     * the size stays fixed.
+     *
+     * @return the element removed
+     */
+    @Benchmark
+    public Integer removeAny() {
+        Integer x = this.set.removeAny();
+        this.set.add(x);
+        return x;
+    }
+
+    /**
+     * Full in-order iteration.
+     *
+     * @param bh
+     *            sink for the elements
+     */
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer x : this.set) {
+            bh.consume(x);
+        }
+    }
+
+    /**
+     * Fresh operands of a bulk operation, rebuilt before each invocation:
+     * the even integers in [0, 2 * size), and the multiples of 3 in
+     * [0, 3 * (size / 4)), half of which are in the first.
+     */
+    @State(Scope.Thread)
+    public static class BulkOperands {
+
+        /**
+         * Receiver of the operation.
+         */
+        private Set<Integer> left;
+
+        /**
+         * Argument of the operation.
+         */
+        private Set<Integer> right;
+
+        /**
+         * Rebuilds the operands, in linear time for {@code Set3a}.
+         *
+         * @param benchmark
+         *            the benchmark state, giving the implementation and size
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Set3aBenchmark benchmark) {
+            int n = benchmark.size;
+            if (benchmark.implementation.equals("Set3a")) {
+                this.left = Set3a.fromSorted(
+                        IntStream.range(0, n).mapToObj(i -> 2 * i));
+                this.right = Set3a.fromSorted(
+                        IntStream.range(0, n / 4).mapToObj(i -> 3 * i));
+            } else {
+                this.left = benchmark.newSet();
+                for (int i = 0; i < n; i++) {
+                    this.left.add(2 * i);
+                }
+                this.right = benchmark.newSet();
+                for (int i = 0; i < n / 4; i++) {
+                    this.right.add(3 * i);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Bulk union, {@code left.add(right)}.
+     *
+     * @param operands
+     *            the operands
+     * @return the result
+     */
+    @Benchmark
+    public Set<Integer> union(BulkOperands operands) {
+        operands.left.add(operands.right);
+        return operands.left;
+    }
+
+    /**
+     * Bulk difference, {@code left.remove(right)}.
+     *
+     * @param operands
+     *            the operands
+     * @return the result
+     */
+    @Benchmark
+    public Set<Integer> difference(BulkOperands operands) {
+        operands.left.remove(operands.right);
+        return operands.left;
+    }
+
+    /**
+     * Runs every benchmark of this class with the {@code gc} profiler, which
+     * reports allocation rates and GC counts and times alongside each result.
+     *
+     * @param args
+     *            the command-line arguments; ignored
+     * @throws RunnerException
+     *             if the run fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Set3aBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,123 @@
+package bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark of concurrent lookups in {@code Set3c}, against a
+ * {@code Set3a} guarded by a single lock. Run the {@code contains*}
+ * benchmarks with increasing thread counts (e.g. {@code -t 1}, {@code -t 4},
+ * {@code -t 16}) to see how read throughput scales; the {@code mixed} group
+ * runs readers next to one writer.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Set3cReadBenchmark {
+
+    /**
+     * Number of elements in the sets.
+     */
+    @Param({ "1000", "1000000" })
+    private int size;
+
+    /**
+     * Set under test, holding the even integers in [0, 2 * size).
+     */
+    private Set3c<Integer> concurrent;
+
+    /**
+     * Baseline, holding the same elements, used under its own monitor.
+     */
+    private Set3a<Integer> locked;
+
+    /**
+     * Fills both sets.
+     */
+    @Setup
+    public void setUp() {
+        this.concurrent = new Set3c<Integer>();
+        Integer[] evens = new Integer[this.size];
+        for (int i = 0; i < this.size; i++) {
+            evens[i] = 2 * i;
+            this.concurrent.add(2 * i);
+        }
+        this.locked = Set3a.fromSorted(evens);
+    }
+
+    /**
+     * Returns a random key, hitting the sets half of the time.
+     *
+     * @return the key
+     */
+    private Integer key() {
+        return ThreadLocalRandom.current().nextInt(2 * this.size);
+    }
+
+    /**
+     * Lookup in {@code Set3c}.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean containsConcurrent() {
+        return this.concurrent.contains(this.key());
+    }
+
+    /**
+     * Lookup in {@code Set3a} under a global lock.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean containsLocked() {
+        Integer x = this.key();
+        synchronized (this.locked) {
+            return this.locked.contains(x);
+        }
+    }
+
+    /**
+     * Reader side of the mixed workload.
+     *
+     * @return whether the key was found
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public boolean mixedRead() {
+        return this.concurrent.contains(this.key());
+    }
+
+    /**
+     * Writer side of the mixed workload: toggles an odd key, which readers
+     * mostly miss.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() {
+        Integer x = 2 * ThreadLocalRandom.current().nextInt(this.size) + 1;
+        if (this.concurrent.contains(x)) {
+            this.concurrent.remove(x);
+        } else {
+            this.concurrent.add(x);
+        }
+    }
+
+}
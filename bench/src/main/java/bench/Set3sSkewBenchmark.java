@@ -0,0 +1,253 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import components.set.Set;
+
+/**
+ * JMH benchmark of lookups on skewed traces in the splay tree {@code Set3s}
+ * against the AVL tree {@code Set3a}: either 1% of the elements take 90% of
+ * the lookups, or lookups follow a Zipf distribution. Besides throughput,
+ * each result reports the {@code comparisons} counter, whose rate divided by
+ * the throughput gives the number of comparisons, and so of nodes visited,
+ * per lookup.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Set3sSkewBenchmark {
+
+    /**
+     * Element counting the calls to {@code compareTo}.
+     */
+    public static final class Key implements Comparable<Key> {
+
+        /**
+         * Number of calls to compareTo so far.
+         */
+        private static long comparisons;
+
+        /**
+         * The value.
+         */
+        private final int value;
+
+        /**
+         * Constructor.
+         *
+         * @param value
+         *            the value
+         */
+        Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            comparisons++;
+            return Integer.compare(this.value, other.value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).value == this.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Counter of comparisons, reported next to each result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        /**
+         * Comparisons made by the lookups of the current iteration.
+         */
+        public long comparisons;
+
+        /**
+         * Resets the counter.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.comparisons = 0;
+        }
+
+    }
+
+    /**
+     * Shapes of the lookup trace.
+     */
+    public enum Trace {
+        /**
+         * 1% of the elements take 90% of the lookups, the rest being
+         * uniform.
+         */
+        HOT_SET,
+        /**
+         * Zipf distribution with exponent 1 over the elements.
+         */
+        ZIPFIAN
+    }
+
+    /**
+     * Number of precomputed lookups; a power of two.
+     */
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * Fraction of the elements that are hot.
+     */
+    private static final double HOT_FRACTION = 0.01;
+
+    /**
+     * Fraction of the lookups going to hot elements.
+     */
+    private static final double HOT_LOOKUPS = 0.9;
+
+    /**
+     * Implementation under test.
+     */
+    @Param({ "Set3s", "Set3a" })
+    private String implementation;
+
+    /**
+     * Number of elements in the set.
+     */
+    @Param({ "10000", "1000000" })
+    private int size;
+
+    /**
+     * Shape of the lookup trace.
+     */
+    @Param({ "HOT_SET", "ZIPFIAN" })
+    private Trace trace;
+
+    /**
+     * Set under test.
+     */
+    private Set<Key> set;
+
+    /**
+     * Keys to look up.
+     */
+    private Key[] probes;
+
+    /**
+     * Position of the next lookup.
+     */
+    private int next;
+
+    /**
+     * Returns a Zipf-distributed rank in [0, n) for exponent 1, by inverting
+     * the continuous approximation of the distribution.
+     *
+     * @param random
+     *            the source of randomness
+     * @param n
+     *            the number of ranks
+     * @return the rank
+     */
+    private static int zipf(Random random, int n) {
+        double x = Math.exp(random.nextDouble() * Math.log(n + 1.0));
+        return Math.min(n - 1, (int) x - 1);
+    }
+
+    /**
+     * Fills the set in random order and draws the trace. Frequent elements
+     * are chosen independently of the insertion order, so they are not
+     * favored by where the tree first put them.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int n = this.size;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        if (this.implementation.equals("Set3s")) {
+            this.set = new Set3s<Key>();
+        } else {
+            this.set = new Set3a<Key>();
+        }
+        for (int i : order) {
+            this.set.add(new Key(i));
+        }
+        /*
+         * Element of rank r in the trace is byRank[r], a random permutation
+         * independent of the insertion order.
+         */
+        int[] byRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            byRank[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = byRank[i];
+            byRank[i] = byRank[j];
+            byRank[j] = tmp;
+        }
+        int hotCount = Math.max(1, (int) (n * HOT_FRACTION));
+        this.probes = new Key[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int rank;
+            if (this.trace == Trace.ZIPFIAN) {
+                rank = zipf(random, n);
+            } else if (random.nextDouble() < HOT_LOOKUPS) {
+                rank = random.nextInt(hotCount);
+            } else {
+                rank = random.nextInt(n);
+            }
+            this.probes[i] = new Key(byRank[rank]);
+        }
+        this.next = 0;
+    }
+
+    /**
+     * Lookup of the next key of the trace.
+     *
+     * @param counters
+     *            the comparison counter
+     * @return whether the key was found
+     */
+    @Benchmark
+    public boolean contains(Counters counters) {
+        Key x = this.probes[this.next];
+        this.next = (this.next + 1) & (PROBES - 1);
+        long before = Key.comparisons;
+        boolean result = this.set.contains(x);
+        counters.comparisons += Key.comparisons - before;
+        return result;
+    }
+
+}
@@ -0,0 +1,647 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable set kept in a {@code Set3a} and persisted in a directory as a
+ * sorted snapshot (written by {@code Set3a.writeTo}) plus a write-ahead log of
+ * the updates made since. Log records are buffered and forced to the storage
+ * device in groups: once {@code syncBytes} bytes are pending or
+ * {@code syncIntervalMillis} milliseconds have passed since the last sync,
+ * whichever comes first, or when {@link #sync()} or {@link #close()} is
+ * called. A background thread also syncs every {@code syncIntervalMillis}
+ * milliseconds while records are pending, so an update becomes durable within
+ * about that time even if no other update follows; a crash may lose at most
+ * the updates of the last unsynced group. A failed background sync is retried,
+ * and reported, by the next sync. Once the log grows past
+ * {@code checkpointBytes}, a new snapshot is written and the log is emptied.
+ *
+ * <p>
+ * Each log record is the length of its payload and a CRC-32 of the payload,
+ * as {@code int}s, then the payload: an operation byte followed by the element
+ * encoded by the codec. Opening the directory loads the snapshot and replays
+ * the log up to its first incomplete or corrupted record, where the log is
+ * truncated. Replay is idempotent (adding a present element or removing an
+ * absent one does nothing), so a crash between writing a snapshot and emptying
+ * the log does no harm.
+ * </p>
+ *
+ * @param <T>
+ *            type of the elements
+ * @convention <pre>
+ * [labels of $this.set = the snapshot in $this.directory with the records of
+ *  $this.log and of $this.buffer replayed over it]  and
+ *  $this.logSize = [size of the log file] + $this.buffer.position()  and
+ *  $this.unsynced <= $this.logSize
+ * </pre>
+ * @correspondence this = labels of $this.set
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class DurableSet3<T extends Comparable<T>>
+        implements Iterable<T>, Closeable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Name of the snapshot file.
+     */
+    private static final String SNAPSHOT = "snapshot";
+
+    /**
+     * Name of the snapshot file while it is being written.
+     */
+    private static final String SNAPSHOT_TMP = "snapshot.tmp";
+
+    /**
+     * Name of the log file.
+     */
+    private static final String LOG = "log";
+
+    /**
+     * Operation byte of an add.
+     */
+    private static final byte ADD = 1;
+
+    /**
+     * Operation byte of a remove.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * Size of the length and checksum preceding each payload.
+     */
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    /**
+     * Default value of {@code syncBytes}.
+     */
+    private static final int DEFAULT_SYNC_BYTES = 1 << 20;
+
+    /**
+     * Default value of {@code syncIntervalMillis}.
+     */
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+
+    /**
+     * Default value of {@code checkpointBytes}.
+     */
+    private static final int DEFAULT_CHECKPOINT_BYTES = 64 << 20;
+
+    /**
+     * Directory holding the snapshot and the log.
+     */
+    private final Path directory;
+
+    /**
+     * Encoding of the elements.
+     */
+    private final Set3aCodec<T> codec;
+
+    /**
+     * Number of pending log bytes forcing a sync.
+     */
+    private final int syncBytes;
+
+    /**
+     * Time since the last sync forcing a sync, in nanoseconds.
+     */
+    private final long syncIntervalNanos;
+
+    /**
+     * Size of the log forcing a checkpoint.
+     */
+    private final int checkpointBytes;
+
+    /**
+     * Checksum of the record being written.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The elements.
+     */
+    private Set3a<T> set;
+
+    /**
+     * The log file, positioned at its end.
+     */
+    private FileChannel log;
+
+    /**
+     * Log records not yet written to the log file.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Size of the log, including the buffered records.
+     */
+    private long logSize;
+
+    /**
+     * Number of log bytes appended since the last sync.
+     */
+    private long unsynced;
+
+    /**
+     * Value of {@code System.nanoTime()} at the last sync.
+     */
+    private long lastSync;
+
+    /**
+     * Thread syncing pending records every {@code syncIntervalNanos}, or null
+     * if every update is synced at once.
+     */
+    private ScheduledExecutorService syncer;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            the directory
+     * @param codec
+     *            the encoding of the elements
+     * @param syncBytes
+     *            the number of pending log bytes forcing a sync
+     * @param syncIntervalMillis
+     *            the time since the last sync forcing a sync
+     * @param checkpointBytes
+     *            the size of the log forcing a checkpoint
+     */
+    private DurableSet3(Path directory, Set3aCodec<T> codec, int syncBytes,
+            long syncIntervalMillis, int checkpointBytes) {
+        this.directory = directory;
+        this.codec = codec;
+        this.syncBytes = syncBytes;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS
+                .toNanos(syncIntervalMillis);
+        this.checkpointBytes = checkpointBytes;
+        this.buffer = ByteBuffer.allocate(Math.min(syncBytes, 1 << 16));
+    }
+
+    /**
+     * Loads the snapshot, replays the log over it, and truncates the log
+     * after its last valid record.
+     *
+     * @throws IOException
+     *             if the files cannot be read or the snapshot is corrupted
+     */
+    private void recover() throws IOException {
+        Files.deleteIfExists(this.directory.resolve(SNAPSHOT_TMP));
+        Path snapshot = this.directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            try (FileChannel in = FileChannel.open(snapshot,
+                    StandardOpenOption.READ)) {
+                this.set = Set3a.readFrom(in, this.codec);
+            }
+        } else {
+            this.set = new Set3a<T>();
+        }
+        this.log = FileChannel.open(this.directory.resolve(LOG),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = this.log.size();
+        int valid = 0;
+        if (size > 0) {
+            ByteBuffer records = this.log.map(FileChannel.MapMode.READ_ONLY,
+                    0, size);
+            while (this.replay(records)) {
+                valid = records.position();
+            }
+        }
+        if (valid < size) {
+            /*
+             * Drop the torn tail left by a crash in the middle of a write.
+             */
+            this.log.truncate(valid);
+            this.log.force(true);
+        }
+        this.log.position(valid);
+        this.logSize = valid;
+        this.lastSync = System.nanoTime();
+    }
+
+    /**
+     * Replays the record at the position of {@code records}, if it is
+     * complete and valid.
+     *
+     * @param records
+     *            the log
+     * @return true iff a record was replayed
+     * @updates records
+     * @ensures [if replay then records.position() is just past the record]
+     */
+    private boolean replay(ByteBuffer records) {
+        boolean result = false;
+        if (records.remaining() >= RECORD_HEADER) {
+            int length = records.getInt(records.position());
+            int checksum = records.getInt(records.position() + Integer.BYTES);
+            int width = this.codec.width();
+            if (length >= 1
+                    && length <= records.remaining() - RECORD_HEADER
+                    && (width == 0 || length == 1 + width)) {
+                ByteBuffer payload = records.duplicate();
+                payload.position(records.position() + RECORD_HEADER);
+                payload.limit(payload.position() + length);
+                this.crc.reset();
+                this.crc.update(payload.duplicate());
+                byte op = payload.get();
+                if ((int) this.crc.getValue() == checksum
+                        && (op == ADD || op == REMOVE)) {
+                    T x = this.codec.decode(payload, length - 1);
+                    if (op == ADD) {
+                        this.set.addIfAbsent(x);
+                    } else {
+                        this.set.removeIfPresent(x);
+                    }
+                    records.position(payload.limit());
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends to the log buffer a record of operation {@code op} on
+     * {@code x}.
+     *
+     * @param op
+     *            the operation byte
+     * @param x
+     *            the element
+     * @throws IOException
+     *             if the buffer has to be written out and that fails
+     */
+    private void append(byte op, T x) throws IOException {
+        int length = 1 + this.codec.size(x);
+        int recordSize = RECORD_HEADER + length;
+        if (this.buffer.remaining() < recordSize) {
+            this.writeBuffer();
+            if (this.buffer.capacity() < recordSize) {
+                this.buffer = ByteBuffer.allocate(recordSize);
+            }
+        }
+        int start = this.buffer.position();
+        this.buffer.putInt(length).putInt(0).put(op);
+        this.codec.encode(x, this.buffer);
+        ByteBuffer payload = this.buffer.duplicate();
+        payload.limit(this.buffer.position());
+        payload.position(start + RECORD_HEADER);
+        this.crc.reset();
+        this.crc.update(payload);
+        this.buffer.putInt(start + Integer.BYTES, (int) this.crc.getValue());
+        this.logSize += recordSize;
+        this.unsynced += recordSize;
+    }
+
+    /**
+     * Syncs and checkpoints if the policy calls for it.
+     *
+     * @throws IOException
+     *             if the log or the snapshot cannot be written
+     */
+    private void commit() throws IOException {
+        long sinceSync = System.nanoTime() - this.lastSync;
+        if (this.unsynced >= this.syncBytes
+                || sinceSync >= this.syncIntervalNanos) {
+            this.sync();
+        }
+        if (this.logSize >= this.checkpointBytes) {
+            this.checkpoint();
+        }
+    }
+
+    /**
+     * Syncs the pending records, if any; run by {@code this.syncer}.
+     */
+    private synchronized void syncPending() {
+        if (this.unsynced > 0 && this.log.isOpen()) {
+            try {
+                this.sync();
+            } catch (IOException e) {
+                /*
+                 * The records stay pending, and the next sync, at the latest
+                 * the one in close, retries and reports the failure.
+                 */
+            }
+        }
+    }
+
+    /**
+     * Starts {@code this.syncer}, unless every update is synced at once.
+     */
+    private void startSyncer() {
+        if (this.syncIntervalNanos > 0) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DurableSet3-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            this.syncer.scheduleWithFixedDelay(this::syncPending,
+                    this.syncIntervalNanos, this.syncIntervalNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Writes the buffered log records to the log file, without forcing them.
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    private void writeBuffer() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.log.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Forces a rename in {@code this.directory} to the storage device, where
+     * the platform allows directories to be opened.
+     */
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(this.directory,
+                StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            /*
+             * Some platforms cannot open directories; the rename is then as
+             * durable as the platform makes it.
+             */
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Opens the set stored in {@code directory}, creating the directory and
+     * an empty set if needed, and recovers from any crash. Syncs happen every
+     * 1 MB or 10 ms of updates and checkpoints every 64 MB of log.
+     *
+     * @param <T>
+     *            type of the elements
+     * @param directory
+     *            the directory
+     * @param codec
+     *            the encoding of the elements
+     * @return the set
+     * @throws IOException
+     *             if the files cannot be created or read, or the snapshot is
+     *             corrupted
+     * @ensures open = [the set stored in directory, or {} if there is none]
+     */
+    public static <T extends Comparable<T>> DurableSet3<T> open(
+            Path directory, Set3aCodec<T> codec) throws IOException {
+        return open(directory, codec, DEFAULT_SYNC_BYTES,
+                DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens the set stored in {@code directory} with the given sync and
+     * checkpoint policy, creating the directory and an empty set if needed,
+     * and recovers from any crash.
+     *
+     * @param <T>
+     *            type of the elements
+     * @param directory
+     *            the directory
+     * @param codec
+     *            the encoding of the elements
+     * @param syncBytes
+     *            the number of pending log bytes forcing a sync
+     * @param syncIntervalMillis
+     *            the time since the last sync forcing a sync, in milliseconds
+     * @param checkpointBytes
+     *            the size of the log forcing a checkpoint
+     * @return the set
+     * @throws IOException
+     *             if the files cannot be created or read, or the snapshot is
+     *             corrupted
+     * @requires syncBytes > 0 and syncIntervalMillis >= 0 and
+     *           checkpointBytes > 0
+     * @ensures open = [the set stored in directory, or {} if there is none]
+     */
+    public static <T extends Comparable<T>> DurableSet3<T> open(
+            Path directory, Set3aCodec<T> codec, int syncBytes,
+            long syncIntervalMillis, int checkpointBytes) throws IOException {
+        assert directory != null : "Violation of: directory is not null";
+        assert codec != null : "Violation of: codec is not null";
+        assert syncBytes > 0 : "Violation of: syncBytes > 0";
+        assert syncIntervalMillis >= 0 : ""
+                + "Violation of: syncIntervalMillis >= 0";
+        assert checkpointBytes > 0 : "Violation of: checkpointBytes > 0";
+
+        Files.createDirectories(directory);
+        DurableSet3<T> result = new DurableSet3<T>(directory, codec,
+                syncBytes, syncIntervalMillis, checkpointBytes);
+        result.recover();
+        result.startSyncer();
+        return result;
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to {@code this}, logging the update.
+     *
+     * @param x
+     *            the element to be added
+     * @throws IOException
+     *             if the log or the snapshot cannot be written
+     * @updates this
+     * @requires x is not in this
+     * @ensures this = #this union {x}
+     */
+    public synchronized void add(T x) throws IOException {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.append(ADD, x);
+        this.set.add(x);
+        this.commit();
+    }
+
+    /**
+     * Removes {@code x} from {@code this}, logging the update, and returns
+     * it.
+     *
+     * @param x
+     *            the element to be removed
+     * @return the element removed
+     * @throws IOException
+     *             if the log or the snapshot cannot be written
+     * @updates this
+     * @requires x is in this
+     * @ensures this = #this \ {x} and remove = x
+     */
+    public synchronized T remove(T x) throws IOException {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        this.append(REMOVE, x);
+        T result = this.set.remove(x);
+        this.commit();
+        return result;
+    }
+
+    /**
+     * Removes and returns an arbitrary element from {@code this}, logging the
+     * update.
+     *
+     * @return the element removed from this
+     * @throws IOException
+     *             if the log or the snapshot cannot be written
+     * @updates this
+     * @requires |this| > 0
+     * @ensures removeAny is in #this and this = #this \ {removeAny}
+     */
+    public synchronized T removeAny() throws IOException {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * The element is only known once removed; put it back if it cannot be
+         * logged, so that this still matches the log.
+         */
+        T result = this.set.removeAny();
+        try {
+            this.append(REMOVE, result);
+        } catch (IOException e) {
+            this.set.add(result);
+            throw e;
+        }
+        this.commit();
+        return result;
+    }
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the element to be checked
+     * @return true iff element is in this
+     * @ensures contains = (x is in this)
+     */
+    public boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.set.contains(x);
+    }
+
+    /**
+     * Reports size (cardinality) of {@code this}.
+     *
+     * @return the number of elements in this
+     * @ensures size = |this|
+     */
+    public int size() {
+        return this.set.size();
+    }
+
+    /**
+     * Returns an iterator over the elements of {@code this} in increasing
+     * order; {@code this} must not be updated while it is in use.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this.set.iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Makes every update so far durable.
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        this.writeBuffer();
+        this.log.force(false);
+        this.unsynced = 0;
+        this.lastSync = System.nanoTime();
+    }
+
+    /**
+     * Writes a snapshot of {@code this} and empties the log, so that the next
+     * recovery has nothing to replay. The snapshot is written to a temporary
+     * file and renamed into place, so a crash leaves either the old or the
+     * new snapshot.
+     *
+     * @throws IOException
+     *             if the snapshot or the log cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        this.sync();
+        Path tmp = this.directory.resolve(SNAPSHOT_TMP);
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.set.writeTo(out, this.codec);
+            out.force(true);
+        }
+        Files.move(tmp, this.directory.resolve(SNAPSHOT),
+                StandardCopyOption.ATOMIC_MOVE);
+        this.forceDirectory();
+        this.log.truncate(0);
+        this.log.force(true);
+        this.logSize = 0;
+    }
+
+    /**
+     * Makes every update so far durable and closes the log. {@code this} must
+     * not be used afterwards.
+     *
+     * @throws IOException
+     *             if the log cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.syncer != null) {
+            /*
+             * Let a running background sync finish, without interrupting it
+             * (which would close the log), and before taking the lock it
+             * needs.
+             */
+            this.syncer.shutdown();
+            try {
+                this.syncer.awaitTermination(Long.MAX_VALUE,
+                        TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                this.sync();
+            } finally {
+                this.log.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Immutable set of {@code long}s, made by {@code LongSet3.toFrozen}, stored
+ * in one array in Eytzinger (breadth-first) order: the root of the implicit
+ * perfectly balanced search tree is at index 1 and the children of index
+ * {@code k} are at {@code 2k} and {@code 2k + 1}. The first levels of the
+ * tree, visited by every search, share a few cache lines, and each step of
+ * {@code contains} is a comparison turned into an index increment rather than
+ * a branch, so searches do not stall on mispredictions or pointer loads.
+ *
+ * @mathdefinitions <pre>
+ * IS_EYTZINGER(
+ *   a: string of integer,
+ *   n: integer
+ *  ): boolean satisfies
+ *  [the in-order traversal of the implicit tree on indices [1, n], where k
+ *   has children 2k and 2k+1 when they are at most n, visits a[1, n] in
+ *   strictly increasing order]
+ * </pre>
+ * @convention |$this.tree| = $this.size + 1 and IS_EYTZINGER($this.tree,
+ *             $this.size)
+ * @correspondence this = {$this.tree[k]: integer where 1 <= k <= $this.size}
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class FrozenLongSet3 implements Iterable<Long> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The elements in Eytzinger order, from index 1; index 0 is unused.
+     */
+    private final long[] tree;
+
+    /**
+     * Number of elements.
+     */
+    private final int size;
+
+    /**
+     * Fills the subtree of the implicit tree rooted at index {@code k} from
+     * {@code sorted}, in order.
+     *
+     * @param sorted
+     *            the source of elements
+     * @param k
+     *            the index of the subtree root
+     * @updates sorted, this.tree
+     */
+    private void fill(PrimitiveIterator.OfLong sorted, int k) {
+        if (k <= this.size) {
+            this.fill(sorted, 2 * k);
+            this.tree[k] = sorted.nextLong();
+            this.fill(sorted, 2 * k + 1);
+        }
+    }
+
+    /**
+     * Returns the index of the smallest element of the subtree rooted at
+     * index {@code k}.
+     *
+     * @param k
+     *            the index of the subtree root
+     * @return the index of its left-most node
+     * @requires 1 <= k <= this.size
+     */
+    private int leftMost(int k) {
+        int result = k;
+        while (2 * result <= this.size) {
+            result = 2 * result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the in-order successor of index {@code k}, or 0 if
+     * there is none.
+     *
+     * @param k
+     *            the index
+     * @return the index of the next element, or 0
+     * @requires 1 <= k <= this.size
+     */
+    private int successor(int k) {
+        int result;
+        if (2 * k + 1 <= this.size) {
+            result = this.leftMost(2 * k + 1);
+        } else {
+            /*
+             * Climb past every step up from a right child, then one step up
+             * from a left child.
+             */
+            result = k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Constructor from the first {@code n} elements of {@code sorted}.
+     *
+     * @param sorted
+     *            the elements, in strictly increasing order
+     * @param n
+     *            the number of elements
+     * @updates sorted
+     * @requires [sorted has at least n more elements, in strictly increasing
+     *           order]
+     * @ensures this = [the first n elements of #sorted]
+     */
+    FrozenLongSet3(PrimitiveIterator.OfLong sorted, int n) {
+        this.tree = new long[n + 1];
+        this.size = n;
+        this.fill(sorted, 1);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the element to be checked
+     * @return true iff element is in this
+     * @ensures contains = (x is in this)
+     */
+    public final boolean contains(long x) {
+        long[] a = this.tree;
+        int n = this.size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (a[k] < x ? 1 : 0);
+        }
+        /*
+         * The path taken is spelled by the bits of k below its leading one
+         * (1 = went right); the last left turn was at the smallest element
+         * not less than x.
+         */
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && a[k] == x;
+    }
+
+    /**
+     * Reports size (cardinality) of {@code this}.
+     *
+     * @return the number of elements in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns an iterator over the elements of {@code this} in increasing
+     * order.
+     *
+     * @return the iterator
+     */
+    @Override
+    public final PrimitiveIterator.OfLong iterator() {
+        return new FrozenLongSet3Iterator();
+    }
+
+    /*
+     * Common methods (from Object) -------------------------------------------
+     */
+
+    @Override
+    public final boolean equals(Object obj) {
+        boolean result = obj == this;
+        if (!result && obj instanceof FrozenLongSet3) {
+            /*
+             * The layout depends only on the elements, so equal sets have
+             * equal arrays.
+             */
+            result = Arrays.equals(this.tree,
+                    ((FrozenLongSet3) obj).tree);
+        }
+        return result;
+    }
+
+    @Override
+    public final int hashCode() {
+        int result = 0;
+        for (int k = 1; k <= this.size; k++) {
+            result += Long.hashCode(this.tree[k]);
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder("{");
+        PrimitiveIterator.OfLong it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.nextLong());
+            if (it.hasNext()) {
+                result.append(",");
+            }
+        }
+        result.append("}");
+        return result.toString();
+    }
+
+    /**
+     * In-order iterator over the elements of {@code this}.
+     */
+    private final class FrozenLongSet3Iterator
+            implements PrimitiveIterator.OfLong {
+
+        /**
+         * Index of the next element, or 0 at the end.
+         */
+        private int k;
+
+        /**
+         * No-argument constructor.
+         */
+        FrozenLongSet3Iterator() {
+            if (FrozenLongSet3.this.size > 0) {
+                this.k = FrozenLongSet3.this.leftMost(1);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.k != 0;
+        }
+
+        @Override
+        public long nextLong() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long result = FrozenLongSet3.this.tree[this.k];
+            this.k = FrozenLongSet3.this.successor(this.k);
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
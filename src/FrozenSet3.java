@@ -0,0 +1,271 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set made by {@code Set3a.toFrozen}, with its elements in a single
+ * array in Eytzinger order: index 1 holds the root of an implicit, perfectly
+ * balanced search tree, and index {@code k} has children {@code 2k} and
+ * {@code 2k + 1}. A lookup walks down the array choosing the child by
+ * arithmetic on the comparison, with no pointers to follow and a single
+ * equality test at the end. Iteration is in increasing order.
+ *
+ * @param <T>
+ *            type of the elements
+ * @mathdefinitions <pre>
+ * IS_EYTZINGER(
+ *   a: string of T,
+ *   n: integer
+ *  ): boolean satisfies
+ *  [the in-order traversal of the implicit tree on indices [1, n], where k
+ *   has children 2k and 2k+1 when they are at most n, visits a[1, n] in
+ *   strictly increasing order of compareTo for T]
+ * </pre>
+ * @convention |$this.tree| = $this.size + 1 and IS_EYTZINGER($this.tree,
+ *             $this.size)
+ * @correspondence this = {$this.tree[k]: T where 1 <= k <= $this.size}
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class FrozenSet3<T extends Comparable<T>> implements Iterable<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The elements in Eytzinger order, from index 1; index 0 is unused.
+     */
+    private final Object[] tree;
+
+    /**
+     * Number of elements.
+     */
+    private final int size;
+
+    /**
+     * Returns the element at index {@code k}.
+     *
+     * @param k
+     *            the index
+     * @return this.tree[k]
+     * @requires 1 <= k <= this.size
+     */
+    @SuppressWarnings("unchecked")
+    private T at(int k) {
+        return (T) this.tree[k];
+    }
+
+    /**
+     * Fills the subtree of the implicit tree rooted at index {@code k} from
+     * {@code sorted}, in order.
+     *
+     * @param sorted
+     *            the source of elements
+     * @param k
+     *            the index of the subtree root
+     * @updates sorted, this.tree
+     */
+    private void fill(Iterator<T> sorted, int k) {
+        if (k <= this.size) {
+            this.fill(sorted, 2 * k);
+            this.tree[k] = sorted.next();
+            this.fill(sorted, 2 * k + 1);
+        }
+    }
+
+    /**
+     * Returns the index of the smallest element of the subtree rooted at
+     * index {@code k}.
+     *
+     * @param k
+     *            the index of the subtree root
+     * @return the index of its left-most node
+     * @requires 1 <= k <= this.size
+     */
+    private int leftMost(int k) {
+        int result = k;
+        while (2 * result <= this.size) {
+            result = 2 * result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the in-order successor of index {@code k}, or 0 if
+     * there is none.
+     *
+     * @param k
+     *            the index
+     * @return the index of the next element, or 0
+     * @requires 1 <= k <= this.size
+     */
+    private int successor(int k) {
+        int result;
+        if (2 * k + 1 <= this.size) {
+            result = this.leftMost(2 * k + 1);
+        } else {
+            /*
+             * Climb past every step up from a right child, then one step up
+             * from a left child.
+             */
+            result = k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Constructor from the first {@code n} elements of {@code sorted}.
+     *
+     * @param sorted
+     *            the elements, in strictly increasing order
+     * @param n
+     *            the number of elements
+     * @updates sorted
+     * @requires [sorted has at least n more elements, in strictly increasing
+     *           order]
+     * @ensures this = [the first n elements of #sorted]
+     */
+    FrozenSet3(Iterator<T> sorted, int n) {
+        this.tree = new Object[n + 1];
+        this.size = n;
+        this.fill(sorted, 1);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the element to be checked
+     * @return true iff element is in this
+     * @requires x is not null
+     * @ensures contains = (x is in this)
+     */
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int n = this.size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (this.at(k).compareTo(x) < 0 ? 1 : 0);
+        }
+        /*
+         * Undo the right turns taken after the last left turn, which was at
+         * the smallest element not less than x, if any.
+         */
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && this.at(k).compareTo(x) == 0;
+    }
+
+    /**
+     * Reports size (cardinality) of {@code this}.
+     *
+     * @return the number of elements in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns an iterator over the elements of {@code this} in increasing
+     * order.
+     *
+     * @return the iterator
+     */
+    @Override
+    public final Iterator<T> iterator() {
+        return new FrozenSet3Iterator();
+    }
+
+    /*
+     * Common methods (from Object) -------------------------------------------
+     */
+
+    @Override
+    public final boolean equals(Object obj) {
+        boolean result = obj == this;
+        if (!result && obj instanceof FrozenSet3<?>) {
+            /*
+             * The layout depends only on the elements, so equal sets have
+             * equal arrays.
+             */
+            result = Arrays.equals(this.tree,
+                    ((FrozenSet3<?>) obj).tree);
+        }
+        return result;
+    }
+
+    @Override
+    public final int hashCode() {
+        int result = 0;
+        for (int k = 1; k <= this.size; k++) {
+            result += this.tree[k].hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder("{");
+        Iterator<T> it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.next());
+            if (it.hasNext()) {
+                result.append(",");
+            }
+        }
+        result.append("}");
+        return result.toString();
+    }
+
+    /**
+     * In-order iterator over the elements of {@code this}.
+     */
+    private final class FrozenSet3Iterator implements Iterator<T> {
+
+        /**
+         * Index of the next element, or 0 at the end.
+         */
+        private int k;
+
+        /**
+         * No-argument constructor.
+         */
+        FrozenSet3Iterator() {
+            if (FrozenSet3.this.size > 0) {
+                this.k = FrozenSet3.this.leftMost(1);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.k != 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = FrozenSet3.this.at(this.k);
+            this.k = FrozenSet3.this.successor(this.k);
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,630 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Set of {@code long}s represented as a height-balanced AVL binary search tree
+ * whose nodes are slots of parallel primitive arrays, so that elements are
+ * stored without boxing and without a per-element object.
+ *
+ * <p>
+ * The kernel methods follow the contract of {@code SetKernel<Long>}:
+ * {@code add} requires the element not to be in the set, and {@code remove}
+ * requires it to be in the set.
+ * </p>
+ *
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of integer
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties with the usual
+ *   ordering of integers, including that it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of integer
+ *  ): boolean satisfies
+ *  [for every node n of tree, the heights of the left and right subtrees of
+ *   n differ by at most one, and height[n] is the height of the subtree
+ *   rooted at n]
+ *
+ * TREE(
+ *   n: integer
+ *  ): binary tree of integer satisfies
+ *  [the tree rooted at slot n, where slot NIL is the empty tree, the label of
+ *   slot m is $this.keys[m] and its subtrees are TREE($this.left[m]) and
+ *   TREE($this.right[m])]
+ * </pre>
+ * @convention <pre>
+ * IS_BST(TREE($this.root))  and  IS_AVL(TREE($this.root))  and
+ *  $this.size = |TREE($this.root)|  and  $this.height[NIL] = 0  and
+ *  [slots in [1, $this.next) not in TREE($this.root) are chained from
+ *   $this.free through $this.left]
+ * </pre>
+ * @correspondence this = labels(TREE($this.root))
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public class LongSet3 implements Iterable<Long> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Slot standing for the empty tree.
+     */
+    private static final int NIL = 0;
+
+    /**
+     * Initial number of slots, including NIL.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Maximum height of an AVL tree with fewer than 2^31 nodes is 45; the
+     * search path scratch space is given some slack beyond that.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Label of each slot.
+     */
+    private long[] keys;
+
+    /**
+     * Left subtree of each slot; also links the free slots.
+     */
+    private int[] left;
+
+    /**
+     * Right subtree of each slot.
+     */
+    private int[] right;
+
+    /**
+     * Height of the subtree rooted at each slot.
+     */
+    private byte[] height;
+
+    /**
+     * Root slot of the tree.
+     */
+    private int root;
+
+    /**
+     * Number of elements included in {@code this}.
+     */
+    private int size;
+
+    /**
+     * First slot of the free list, or NIL if it is empty.
+     */
+    private int free;
+
+    /**
+     * First slot that has never been used.
+     */
+    private int next;
+
+    /**
+     * Scratch space holding the search path of the current update.
+     */
+    private final int[] path = new int[MAX_HEIGHT];
+
+    /**
+     * Returns a free slot labeled {@code x}, growing the arrays if needed.
+     *
+     * @param x
+     *            the label of the new leaf
+     * @return the slot of the new leaf
+     */
+    private int allocate(long x) {
+        int n = this.free;
+        if (n != NIL) {
+            this.free = this.left[n];
+        } else {
+            if (this.next == this.keys.length) {
+                int capacity = 2 * this.keys.length;
+                this.keys = Arrays.copyOf(this.keys, capacity);
+                this.left = Arrays.copyOf(this.left, capacity);
+                this.right = Arrays.copyOf(this.right, capacity);
+                this.height = Arrays.copyOf(this.height, capacity);
+            }
+            n = this.next;
+            this.next++;
+        }
+        this.keys[n] = x;
+        this.left[n] = NIL;
+        this.right[n] = NIL;
+        this.height[n] = 1;
+        return n;
+    }
+
+    /**
+     * Returns slot {@code n} to the free list.
+     *
+     * @param n
+     *            the slot no longer in the tree
+     */
+    private void release(int n) {
+        this.left[n] = this.free;
+        this.free = n;
+    }
+
+    /**
+     * Recomputes the height of {@code t} from the heights of its subtrees.
+     *
+     * @param t
+     *            the slot to update
+     */
+    private void update(int t) {
+        this.height[t] = (byte) (1 + Math.max(this.height[this.left[t]],
+                this.height[this.right[t]]));
+    }
+
+    /**
+     * Rotates {@code t} to the right and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= NIL and left[t] /= NIL
+     */
+    private int rotateRight(int t) {
+        int l = this.left[t];
+        this.left[t] = this.right[l];
+        this.right[l] = t;
+        this.update(t);
+        this.update(l);
+        return l;
+    }
+
+    /**
+     * Rotates {@code t} to the left and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= NIL and right[t] /= NIL
+     */
+    private int rotateLeft(int t) {
+        int r = this.right[t];
+        this.right[t] = this.left[r];
+        this.left[r] = t;
+        this.update(t);
+        this.update(r);
+        return r;
+    }
+
+    /**
+     * Restores the AVL property at {@code t}, whose subtrees are AVL trees
+     * with heights differing by at most two, and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rebalance
+     * @return the new root
+     */
+    private int balance(int t) {
+        int result = t;
+        int diff = this.height[this.left[t]] - this.height[this.right[t]];
+        if (diff > 1) {
+            int l = this.left[t];
+            if (this.height[this.left[l]] < this.height[this.right[l]]) {
+                this.left[t] = this.rotateLeft(l);
+            }
+            result = this.rotateRight(t);
+        } else if (diff < -1) {
+            int r = this.right[t];
+            if (this.height[this.right[r]] < this.height[this.left[r]]) {
+                this.right[t] = this.rotateRight(r);
+            }
+            result = this.rotateLeft(t);
+        } else {
+            this.update(t);
+        }
+        return result;
+    }
+
+    /**
+     * Rebalances, from the bottom up, the slots {@code path[0, depth)} of the
+     * search path of the current update, and updates the root.
+     *
+     * @param depth
+     *            the number of slots on the path
+     */
+    private void fixPath(int depth) {
+        int i = depth - 1;
+        boolean changed = true;
+        while (changed && i >= 0) {
+            int t = this.path[i];
+            int oldHeight = this.height[t];
+            int b = this.balance(t);
+            if (i == 0) {
+                this.root = b;
+            } else if (this.left[this.path[i - 1]] == t) {
+                this.left[this.path[i - 1]] = b;
+            } else {
+                this.right[this.path[i - 1]] = b;
+            }
+            changed = b != t || this.height[b] != oldHeight;
+            i--;
+        }
+    }
+
+    /**
+     * Replaces slot {@code n}, found at {@code path[depth]}, by its only
+     * (possibly empty) subtree, rebalances, and frees {@code n}.
+     *
+     * @param n
+     *            the slot to unlink
+     * @param depth
+     *            the number of slots on the path above n
+     * @requires left[n] = NIL or right[n] = NIL
+     */
+    private void unlink(int n, int depth) {
+        int child = this.left[n];
+        if (child == NIL) {
+            child = this.right[n];
+        }
+        if (depth == 0) {
+            this.root = child;
+        } else {
+            int parent = this.path[depth - 1];
+            if (this.left[parent] == n) {
+                this.left[parent] = child;
+            } else {
+                this.right[parent] = child;
+            }
+            this.fixPath(depth);
+        }
+        this.release(n);
+        this.size--;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.left = new int[INITIAL_CAPACITY];
+        this.right = new int[INITIAL_CAPACITY];
+        this.height = new byte[INITIAL_CAPACITY];
+        this.root = NIL;
+        this.size = 0;
+        this.free = NIL;
+        this.next = NIL + 1;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public LongSet3() {
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * Returns a new empty set of the same dynamic type as {@code this}.
+     *
+     * @return new object "like" this
+     * @ensures newInstance = {}
+     */
+    public final LongSet3 newInstance() {
+        return new LongSet3();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value.
+     *
+     * @param source
+     *            object whose value is to be transferred
+     * @replaces this
+     * @clears source
+     */
+    public final void transferFrom(LongSet3 source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+
+        this.keys = source.keys;
+        this.left = source.left;
+        this.right = source.right;
+        this.height = source.height;
+        this.root = source.root;
+        this.size = source.size;
+        this.free = source.free;
+        this.next = source.next;
+        source.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to {@code this}.
+     *
+     * @param x
+     *            the element to be added
+     * @updates this
+     * @requires x is not in this
+     * @ensures this = #this union {x}
+     */
+    public final void add(long x) {
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        int n = this.allocate(x);
+        if (this.root == NIL) {
+            this.root = n;
+        } else {
+            int depth = 0;
+            int t = this.root;
+            int parent = NIL;
+            while (t != NIL) {
+                this.path[depth] = t;
+                depth++;
+                parent = t;
+                if (x < this.keys[t]) {
+                    t = this.left[t];
+                } else {
+                    t = this.right[t];
+                }
+            }
+            if (x < this.keys[parent]) {
+                this.left[parent] = n;
+            } else {
+                this.right[parent] = n;
+            }
+            this.fixPath(depth);
+        }
+        this.size++;
+    }
+
+    /**
+     * Removes {@code x} from {@code this}, and returns it.
+     *
+     * @param x
+     *            the element to be removed
+     * @return the element removed
+     * @updates this
+     * @requires x is in this
+     * @ensures this = #this \ {x} and remove = x
+     */
+    public final long remove(long x) {
+        assert this.contains(x) : "Violation of: x is in this";
+
+        int depth = 0;
+        int n = this.root;
+        while (this.keys[n] != x) {
+            this.path[depth] = n;
+            depth++;
+            if (x < this.keys[n]) {
+                n = this.left[n];
+            } else {
+                n = this.right[n];
+            }
+        }
+        if (this.left[n] != NIL && this.right[n] != NIL) {
+            /*
+             * Both subtrees are non-empty: move the smallest label of the
+             * right subtree into n, and unlink that slot instead.
+             */
+            this.path[depth] = n;
+            depth++;
+            int s = this.right[n];
+            while (this.left[s] != NIL) {
+                this.path[depth] = s;
+                depth++;
+                s = this.left[s];
+            }
+            this.keys[n] = this.keys[s];
+            n = s;
+        }
+        this.unlink(n, depth);
+        return x;
+    }
+
+    /**
+     * Removes and returns an arbitrary element from {@code this}.
+     *
+     * @return the element removed from this
+     * @updates this
+     * @requires |this| > 0
+     * @ensures removeAny is in #this and this = #this \ {removeAny}
+     */
+    public final long removeAny() {
+        assert this.size > 0 : "Violation of: this /= empty_set";
+
+        int depth = 0;
+        int n = this.root;
+        while (this.left[n] != NIL) {
+            this.path[depth] = n;
+            depth++;
+            n = this.left[n];
+        }
+        long x = this.keys[n];
+        this.unlink(n, depth);
+        return x;
+    }
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the element to be checked
+     * @return true iff element is in this
+     * @ensures contains = (x is in this)
+     */
+    public final boolean contains(long x) {
+        int n = this.root;
+        while (n != NIL && this.keys[n] != x) {
+            if (x < this.keys[n]) {
+                n = this.left[n];
+            } else {
+                n = this.right[n];
+            }
+        }
+        return n != NIL;
+    }
+
+    /**
+     * Reports size (cardinality) of {@code this}.
+     *
+     * @return the number of elements in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns an iterator over the elements of {@code this} in increasing
+     * order.
+     *
+     * @return the iterator
+     */
+    @Override
+    public final PrimitiveIterator.OfLong iterator() {
+        return new LongSet3Iterator();
+    }
+
+    /*
+     * Conversion methods -----------------------------------------------------
+     */
+
+    /**
+     * Returns an immutable copy of {@code this} laid out for fast lookups;
+     * see {@link FrozenLongSet3}. Takes O(|this|) time; later changes to
+     * {@code this} do not affect the copy.
+     *
+     * @return the frozen copy
+     * @ensures toFrozen = this
+     */
+    public final FrozenLongSet3 toFrozen() {
+        return new FrozenLongSet3(this.iterator(), this.size);
+    }
+
+    /*
+     * Common methods (from Object) -------------------------------------------
+     */
+
+    @Override
+    public final boolean equals(Object obj) {
+        boolean result = obj == this;
+        if (!result && obj instanceof LongSet3) {
+            LongSet3 other = (LongSet3) obj;
+            result = this.size == other.size;
+            PrimitiveIterator.OfLong it = this.iterator();
+            PrimitiveIterator.OfLong itOther = other.iterator();
+            while (result && it.hasNext()) {
+                result = it.nextLong() == itOther.nextLong();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final int hashCode() {
+        int result = 0;
+        PrimitiveIterator.OfLong it = this.iterator();
+        while (it.hasNext()) {
+            result += Long.hashCode(it.nextLong());
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder("{");
+        PrimitiveIterator.OfLong it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.nextLong());
+            if (it.hasNext()) {
+                result.append(",");
+            }
+        }
+        result.append("}");
+        return result.toString();
+    }
+
+    /**
+     * In-order iterator over the elements of {@code this}.
+     */
+    private final class LongSet3Iterator implements PrimitiveIterator.OfLong {
+
+        /**
+         * Slots whose labels and right subtrees are still to be visited.
+         */
+        private final int[] stack = new int[MAX_HEIGHT];
+
+        /**
+         * Number of slots on the stack.
+         */
+        private int top;
+
+        /**
+         * No-argument constructor.
+         */
+        LongSet3Iterator() {
+            this.pushLeftSpine(LongSet3.this.root);
+        }
+
+        /**
+         * Pushes {@code t} and all its left descendants on the stack.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(int t) {
+            int n = t;
+            while (n != NIL) {
+                this.stack[this.top] = n;
+                this.top++;
+                n = LongSet3.this.left[n];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.top > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.top--;
+            int n = this.stack[this.top];
+            this.pushLeftSpine(LongSet3.this.right[n]);
+            return LongSet3.this.keys[n];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,975 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of fixed-width byte-string keys represented as a height-balanced AVL
+ * binary search tree whose nodes live outside the Java heap, in direct
+ * buffers or in memory-mapped regions of a file. Keys are ordered as unsigned
+ * big-endian numbers (that is, lexicographically by unsigned byte). A
+ * file-backed set is reopened by mapping the file again, without rebuilding
+ * the tree.
+ *
+ * <p>
+ * Nodes are stored in chunks of {@code 2^CHUNK_SHIFT} slots, so the set is
+ * not limited by the 2 GB size of a single buffer. Each slot holds the left
+ * and right subtree slots, the height, and the key; slot {@code NIL} stands
+ * for the empty tree.
+ * </p>
+ *
+ * <p>
+ * The kernel methods follow the contract of {@code SetKernel}: {@code add}
+ * requires the key not to be in the set, and {@code remove} requires it to be
+ * in the set. Keys passed in are never retained; keys handed out are fresh
+ * arrays.
+ * </p>
+ *
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of string of byte
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties with the unsigned
+ *   lexicographic ordering of keys, including that it has no duplicate
+ *   labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of string of byte
+ *  ): boolean satisfies
+ *  [for every node n of tree, the heights of the left and right subtrees of
+ *   n differ by at most one, and the height stored in n is the height of
+ *   the subtree rooted at n]
+ *
+ * TREE(
+ *   n: integer
+ *  ): binary tree of string of byte satisfies
+ *  [the tree rooted at slot n of $this.chunks, where slot NIL is the empty
+ *   tree]
+ * </pre>
+ * @convention <pre>
+ * IS_BST(TREE($this.root))  and  IS_AVL(TREE($this.root))  and
+ *  $this.size = |TREE($this.root)|  and
+ *  [every key in TREE($this.root) has length $this.keyWidth]  and
+ *  [slots in [1, $this.next) not in TREE($this.root) are chained from
+ *   $this.free through their left fields]  and
+ *  [the header holds root, size, free, next and the number of chunks]
+ * </pre>
+ * @correspondence this = labels(TREE($this.root))
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class OffHeapSet3 implements Iterable<byte[]>, Closeable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Identifies a file holding an {@code OffHeapSet3}.
+     */
+    private static final int MAGIC = 0x53335448;
+
+    /**
+     * Version of the layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Header offset of the magic number.
+     */
+    private static final int H_MAGIC = 0;
+
+    /**
+     * Header offset of the layout version.
+     */
+    private static final int H_VERSION = 4;
+
+    /**
+     * Header offset of the key width.
+     */
+    private static final int H_KEY_WIDTH = 8;
+
+    /**
+     * Header offset of the root slot.
+     */
+    private static final int H_ROOT = 12;
+
+    /**
+     * Header offset of the number of keys.
+     */
+    private static final int H_SIZE = 16;
+
+    /**
+     * Header offset of the first free slot.
+     */
+    private static final int H_FREE = 20;
+
+    /**
+     * Header offset of the first never used slot.
+     */
+    private static final int H_NEXT = 24;
+
+    /**
+     * Header offset of the number of chunks.
+     */
+    private static final int H_CHUNKS = 28;
+
+    /**
+     * Slot offset of the left subtree.
+     */
+    private static final int LEFT = 0;
+
+    /**
+     * Slot offset of the right subtree.
+     */
+    private static final int RIGHT = 4;
+
+    /**
+     * Slot offset of the height.
+     */
+    private static final int HEIGHT = 8;
+
+    /**
+     * Slot offset of the key, aligned to eight bytes.
+     */
+    private static final int KEY = 16;
+
+    /**
+     * Base-2 logarithm of the number of slots per chunk.
+     */
+    private static final int CHUNK_SHIFT = 16;
+
+    /**
+     * Mask giving the position of a slot within its chunk.
+     */
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    /**
+     * Slot standing for the empty tree.
+     */
+    private static final int NIL = 0;
+
+    /**
+     * Maximum height of an AVL tree with fewer than 2^31 nodes is 45; the
+     * search path scratch space is given some slack beyond that.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Width of every key, in bytes.
+     */
+    private final int keyWidth;
+
+    /**
+     * Size of a slot, in bytes.
+     */
+    private final int slotSize;
+
+    /**
+     * Backing file, or null for a set in direct buffers.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The header.
+     */
+    private final ByteBuffer header;
+
+    /**
+     * The chunks of slots; only the first chunkCount entries are used.
+     */
+    private ByteBuffer[] chunks;
+
+    /**
+     * Number of chunks.
+     */
+    private int chunkCount;
+
+    /**
+     * Root slot of the tree.
+     */
+    private int root;
+
+    /**
+     * Number of keys included in {@code this}.
+     */
+    private int size;
+
+    /**
+     * First slot of the free list, or NIL if it is empty.
+     */
+    private int free;
+
+    /**
+     * First slot that has never been used.
+     */
+    private int next;
+
+    /**
+     * Scratch space holding the search path of the current update.
+     */
+    private final int[] path = new int[MAX_HEIGHT];
+
+    /**
+     * Constructor from the parts of the representation.
+     *
+     * @param keyWidth
+     *            the key width
+     * @param channel
+     *            the backing file, or null
+     * @param header
+     *            the header buffer
+     */
+    private OffHeapSet3(int keyWidth, FileChannel channel, ByteBuffer header) {
+        this.keyWidth = keyWidth;
+        this.slotSize = KEY + keyWidth;
+        this.channel = channel;
+        this.header = header;
+        this.chunks = new ByteBuffer[1];
+    }
+
+    /**
+     * Returns the chunk holding slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @return its chunk
+     */
+    private ByteBuffer chunk(int n) {
+        return this.chunks[n >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * Returns the offset of slot {@code n} within its chunk.
+     *
+     * @param n
+     *            the slot
+     * @return its offset
+     */
+    private int base(int n) {
+        return (n & CHUNK_MASK) * this.slotSize;
+    }
+
+    /**
+     * Returns the left subtree of slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @return the left subtree slot
+     */
+    private int left(int n) {
+        return this.chunk(n).getInt(this.base(n) + LEFT);
+    }
+
+    /**
+     * Returns the right subtree of slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @return the right subtree slot
+     */
+    private int right(int n) {
+        return this.chunk(n).getInt(this.base(n) + RIGHT);
+    }
+
+    /**
+     * Returns the height of the subtree rooted at slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @return the height
+     */
+    private int height(int n) {
+        return this.chunk(n).getInt(this.base(n) + HEIGHT);
+    }
+
+    /**
+     * Sets the left subtree of slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @param l
+     *            the left subtree slot
+     */
+    private void setLeft(int n, int l) {
+        this.chunk(n).putInt(this.base(n) + LEFT, l);
+    }
+
+    /**
+     * Sets the right subtree of slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @param r
+     *            the right subtree slot
+     */
+    private void setRight(int n, int r) {
+        this.chunk(n).putInt(this.base(n) + RIGHT, r);
+    }
+
+    /**
+     * Returns the eight bytes of {@code x} from position {@code i} as a
+     * big-endian {@code long}.
+     *
+     * @param x
+     *            the key
+     * @param i
+     *            the position
+     * @return the bytes as a long
+     * @requires 0 <= i and i + 8 <= |x|
+     */
+    private static long getLong(byte[] x, int i) {
+        long result = 0;
+        for (int j = 0; j < Long.BYTES; j++) {
+            result = (result << Byte.SIZE) | (x[i + j] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * Compares {@code x} to the key of slot {@code n}.
+     *
+     * @param x
+     *            the key
+     * @param n
+     *            the slot
+     * @return negative, zero or positive as x is less than, equal to or
+     *         greater than the key of n
+     */
+    private int compare(byte[] x, int n) {
+        ByteBuffer b = this.chunk(n);
+        int off = this.base(n) + KEY;
+        int c = 0;
+        for (int i = 0; c == 0 && i < this.keyWidth; i += Long.BYTES) {
+            c = Long.compareUnsigned(getLong(x, i), b.getLong(off + i));
+        }
+        return c;
+    }
+
+    /**
+     * Copies the key of slot {@code from} into slot {@code to}.
+     *
+     * @param from
+     *            the source slot
+     * @param to
+     *            the destination slot
+     */
+    private void copyKey(int from, int to) {
+        ByteBuffer src = this.chunk(from);
+        ByteBuffer dst = this.chunk(to);
+        int srcOff = this.base(from) + KEY;
+        int dstOff = this.base(to) + KEY;
+        for (int i = 0; i < this.keyWidth; i += Long.BYTES) {
+            dst.putLong(dstOff + i, src.getLong(srcOff + i));
+        }
+    }
+
+    /**
+     * Returns a new array holding the key of slot {@code n}.
+     *
+     * @param n
+     *            the slot
+     * @return the key
+     */
+    private byte[] key(int n) {
+        byte[] result = new byte[this.keyWidth];
+        ByteBuffer b = this.chunk(n);
+        int off = this.base(n) + KEY;
+        for (int i = 0; i < this.keyWidth; i++) {
+            result[i] = b.get(off + i);
+        }
+        return result;
+    }
+
+    /**
+     * Maps or allocates chunk number {@code c}.
+     *
+     * @param c
+     *            the chunk number
+     * @return the chunk
+     * @throws IOException
+     *             if the backing file cannot be mapped
+     */
+    private ByteBuffer newChunk(int c) throws IOException {
+        int bytes = this.slotSize << CHUNK_SHIFT;
+        ByteBuffer result;
+        if (this.channel == null) {
+            result = ByteBuffer.allocateDirect(bytes);
+        } else {
+            long position = HEADER_SIZE + (long) c * bytes;
+            MappedByteBuffer mapped = this.channel
+                    .map(FileChannel.MapMode.READ_WRITE, position, bytes);
+            result = mapped;
+        }
+        return result;
+    }
+
+    /**
+     * Adds one chunk of slots.
+     */
+    private void grow() {
+        if (this.chunkCount == this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunks.length);
+        }
+        try {
+            this.chunks[this.chunkCount] = this.newChunk(this.chunkCount);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow backing file", e);
+        }
+        this.chunkCount++;
+    }
+
+    /**
+     * Writes the tree bookkeeping to the header.
+     */
+    private void writeHeader() {
+        this.header.putInt(H_ROOT, this.root);
+        this.header.putInt(H_SIZE, this.size);
+        this.header.putInt(H_FREE, this.free);
+        this.header.putInt(H_NEXT, this.next);
+        this.header.putInt(H_CHUNKS, this.chunkCount);
+    }
+
+    /**
+     * Returns a free slot with key {@code x}, adding a chunk if needed.
+     *
+     * @param x
+     *            the key of the new leaf
+     * @return the slot of the new leaf
+     */
+    private int allocate(byte[] x) {
+        int n = this.free;
+        if (n != NIL) {
+            this.free = this.left(n);
+        } else {
+            if (this.next >>> CHUNK_SHIFT == this.chunkCount) {
+                this.grow();
+            }
+            n = this.next;
+            this.next++;
+        }
+        ByteBuffer b = this.chunk(n);
+        int off = this.base(n);
+        b.putInt(off + LEFT, NIL);
+        b.putInt(off + RIGHT, NIL);
+        b.putInt(off + HEIGHT, 1);
+        for (int i = 0; i < this.keyWidth; i += Long.BYTES) {
+            b.putLong(off + KEY + i, getLong(x, i));
+        }
+        return n;
+    }
+
+    /**
+     * Recomputes the height of {@code t} from the heights of its subtrees.
+     *
+     * @param t
+     *            the slot to update
+     */
+    private void update(int t) {
+        this.chunk(t).putInt(this.base(t) + HEIGHT, 1 + Math
+                .max(this.height(this.left(t)), this.height(this.right(t))));
+    }
+
+    /**
+     * Rotates {@code t} to the right and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     */
+    private int rotateRight(int t) {
+        int l = this.left(t);
+        this.setLeft(t, this.right(l));
+        this.setRight(l, t);
+        this.update(t);
+        this.update(l);
+        return l;
+    }
+
+    /**
+     * Rotates {@code t} to the left and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     */
+    private int rotateLeft(int t) {
+        int r = this.right(t);
+        this.setRight(t, this.left(r));
+        this.setLeft(r, t);
+        this.update(t);
+        this.update(r);
+        return r;
+    }
+
+    /**
+     * Restores the AVL property at {@code t}, whose subtrees are AVL trees
+     * with heights differing by at most two, and returns the new root.
+     *
+     * @param t
+     *            the root of the tree to rebalance
+     * @return the new root
+     */
+    private int balance(int t) {
+        int result = t;
+        int diff = this.height(this.left(t)) - this.height(this.right(t));
+        if (diff > 1) {
+            int l = this.left(t);
+            if (this.height(this.left(l)) < this.height(this.right(l))) {
+                this.setLeft(t, this.rotateLeft(l));
+            }
+            result = this.rotateRight(t);
+        } else if (diff < -1) {
+            int r = this.right(t);
+            if (this.height(this.right(r)) < this.height(this.left(r))) {
+                this.setRight(t, this.rotateRight(r));
+            }
+            result = this.rotateLeft(t);
+        } else {
+            this.update(t);
+        }
+        return result;
+    }
+
+    /**
+     * Rebalances, from the bottom up, the slots {@code path[0, depth)} of the
+     * search path of the current update, and updates the root.
+     *
+     * @param depth
+     *            the number of slots on the path
+     */
+    private void fixPath(int depth) {
+        int i = depth - 1;
+        boolean changed = true;
+        while (changed && i >= 0) {
+            int t = this.path[i];
+            int oldHeight = this.height(t);
+            int b = this.balance(t);
+            if (i == 0) {
+                this.root = b;
+            } else if (this.left(this.path[i - 1]) == t) {
+                this.setLeft(this.path[i - 1], b);
+            } else {
+                this.setRight(this.path[i - 1], b);
+            }
+            changed = b != t || this.height(b) != oldHeight;
+            i--;
+        }
+    }
+
+    /**
+     * Replaces slot {@code n}, found below {@code path[0, depth)}, by its
+     * only (possibly empty) subtree, rebalances, and frees {@code n}.
+     *
+     * @param n
+     *            the slot to unlink
+     * @param depth
+     *            the number of slots on the path above n
+     */
+    private void unlink(int n, int depth) {
+        int child = this.left(n);
+        if (child == NIL) {
+            child = this.right(n);
+        }
+        if (depth == 0) {
+            this.root = child;
+        } else {
+            int parent = this.path[depth - 1];
+            if (this.left(parent) == n) {
+                this.setLeft(parent, child);
+            } else {
+                this.setRight(parent, child);
+            }
+            this.fixPath(depth);
+        }
+        this.setLeft(n, this.free);
+        this.free = n;
+        this.size--;
+        this.writeHeader();
+    }
+
+    /**
+     * Sets up an empty tree in the header and first chunk.
+     */
+    private void createNewRep() {
+        this.header.putInt(H_MAGIC, MAGIC);
+        this.header.putInt(H_VERSION, VERSION);
+        this.header.putInt(H_KEY_WIDTH, this.keyWidth);
+        this.chunkCount = 0;
+        this.grow();
+        /*
+         * Slot NIL is the empty tree, of height zero.
+         */
+        this.chunk(NIL).putInt(this.base(NIL) + HEIGHT, 0);
+        this.root = NIL;
+        this.size = 0;
+        this.free = NIL;
+        this.next = NIL + 1;
+        this.writeHeader();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor of an empty set kept in direct (off-heap) buffers.
+     *
+     * @param keyWidth
+     *            the width of every key, in bytes
+     * @requires keyWidth > 0 and keyWidth mod 8 = 0
+     * @ensures this = {}
+     */
+    public OffHeapSet3(int keyWidth) {
+        this(keyWidth, null, ByteBuffer.allocateDirect(HEADER_SIZE));
+        assert keyWidth > 0 : "Violation of: keyWidth > 0";
+        assert keyWidth % Long.BYTES == 0 : "Violation of: keyWidth mod 8 = 0";
+
+        this.createNewRep();
+    }
+
+    /**
+     * Opens the set stored in {@code file}, or creates an empty one there if
+     * the file is empty or missing. Nothing is rebuilt: the tree is used in
+     * place through memory mapping.
+     *
+     * @param file
+     *            the backing file
+     * @param keyWidth
+     *            the width of every key, in bytes
+     * @return the set
+     * @throws IOException
+     *             if the file cannot be opened or mapped, or holds a set with
+     *             another layout or key width
+     * @requires keyWidth > 0 and keyWidth mod 8 = 0
+     * @ensures open = [the set stored in file, or {} if there is none]
+     */
+    public static OffHeapSet3 open(Path file, int keyWidth)
+            throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert keyWidth > 0 : "Violation of: keyWidth > 0";
+        assert keyWidth % Long.BYTES == 0 : "Violation of: keyWidth mod 8 = 0";
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        boolean fresh = channel.size() == 0;
+        OffHeapSet3 result;
+        try {
+            MappedByteBuffer header = channel
+                    .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            result = new OffHeapSet3(keyWidth, channel, header);
+            if (fresh) {
+                result.createNewRep();
+            } else {
+                if (header.getInt(H_MAGIC) != MAGIC
+                        || header.getInt(H_VERSION) != VERSION) {
+                    throw new IOException(file + " does not hold a set");
+                }
+                if (header.getInt(H_KEY_WIDTH) != keyWidth) {
+                    throw new IOException(file + " holds keys of width "
+                            + header.getInt(H_KEY_WIDTH));
+                }
+                int count = header.getInt(H_CHUNKS);
+                result.chunks = new ByteBuffer[Math.max(1, count)];
+                for (int c = 0; c < count; c++) {
+                    result.chunks[c] = result.newChunk(c);
+                }
+                result.chunkCount = count;
+                result.root = header.getInt(H_ROOT);
+                result.size = header.getInt(H_SIZE);
+                result.free = header.getInt(H_FREE);
+                result.next = header.getInt(H_NEXT);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to {@code this}.
+     *
+     * @param x
+     *            the key to be added
+     * @updates this
+     * @requires |x| = keyWidth and x is not in this
+     * @ensures this = #this union {x}
+     */
+    public void add(byte[] x) {
+        assert x != null : "Violation of: x is not null";
+        assert x.length == this.keyWidth : "Violation of: |x| = keyWidth";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        int n = this.allocate(x);
+        if (this.root == NIL) {
+            this.root = n;
+        } else {
+            int depth = 0;
+            int t = this.root;
+            int parent = NIL;
+            boolean left = false;
+            while (t != NIL) {
+                this.path[depth] = t;
+                depth++;
+                parent = t;
+                left = this.compare(x, t) < 0;
+                if (left) {
+                    t = this.left(t);
+                } else {
+                    t = this.right(t);
+                }
+            }
+            if (left) {
+                this.setLeft(parent, n);
+            } else {
+                this.setRight(parent, n);
+            }
+            this.fixPath(depth);
+        }
+        this.size++;
+        this.writeHeader();
+    }
+
+    /**
+     * Removes {@code x} from {@code this}, and returns it.
+     *
+     * @param x
+     *            the key to be removed
+     * @return the key removed
+     * @updates this
+     * @requires |x| = keyWidth and x is in this
+     * @ensures this = #this \ {x} and remove = x
+     */
+    public byte[] remove(byte[] x) {
+        assert x != null : "Violation of: x is not null";
+        assert x.length == this.keyWidth : "Violation of: |x| = keyWidth";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        int depth = 0;
+        int n = this.root;
+        int c = this.compare(x, n);
+        while (c != 0) {
+            this.path[depth] = n;
+            depth++;
+            if (c < 0) {
+                n = this.left(n);
+            } else {
+                n = this.right(n);
+            }
+            c = this.compare(x, n);
+        }
+        byte[] result = this.key(n);
+        if (this.left(n) != NIL && this.right(n) != NIL) {
+            /*
+             * Both subtrees are non-empty: move the smallest key of the right
+             * subtree into n, and unlink that slot instead.
+             */
+            this.path[depth] = n;
+            depth++;
+            int s = this.right(n);
+            while (this.left(s) != NIL) {
+                this.path[depth] = s;
+                depth++;
+                s = this.left(s);
+            }
+            this.copyKey(s, n);
+            n = s;
+        }
+        this.unlink(n, depth);
+        return result;
+    }
+
+    /**
+     * Removes and returns an arbitrary key from {@code this}.
+     *
+     * @return the key removed from this
+     * @updates this
+     * @requires |this| > 0
+     * @ensures removeAny is in #this and this = #this \ {removeAny}
+     */
+    public byte[] removeAny() {
+        assert this.size > 0 : "Violation of: this /= empty_set";
+
+        int depth = 0;
+        int n = this.root;
+        while (this.left(n) != NIL) {
+            this.path[depth] = n;
+            depth++;
+            n = this.left(n);
+        }
+        byte[] result = this.key(n);
+        this.unlink(n, depth);
+        return result;
+    }
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the key to be checked
+     * @return true iff x is in this
+     * @requires |x| = keyWidth
+     * @ensures contains = (x is in this)
+     */
+    public boolean contains(byte[] x) {
+        assert x != null : "Violation of: x is not null";
+        assert x.length == this.keyWidth : "Violation of: |x| = keyWidth";
+
+        int n = this.root;
+        int c = 1;
+        while (n != NIL && c != 0) {
+            c = this.compare(x, n);
+            if (c < 0) {
+                n = this.left(n);
+            } else if (c > 0) {
+                n = this.right(n);
+            }
+        }
+        return c == 0;
+    }
+
+    /**
+     * Reports size (cardinality) of {@code this}.
+     *
+     * @return the number of keys in this
+     * @ensures size = |this|
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Reports the width of the keys of {@code this}, in bytes.
+     *
+     * @return the key width
+     */
+    public int keyWidth() {
+        return this.keyWidth;
+    }
+
+    /**
+     * Returns an iterator over the keys of {@code this} in increasing order.
+     * Each key is returned in a fresh array.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new OffHeapSet3Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Writes any changes of a file-backed set to the storage device.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void force() throws IOException {
+        if (this.channel != null) {
+            for (int c = 0; c < this.chunkCount; c++) {
+                ((MappedByteBuffer) this.chunks[c]).force();
+            }
+            ((MappedByteBuffer) this.header).force();
+        }
+    }
+
+    /**
+     * Forces any changes to the storage device and closes the backing file.
+     * {@code this} must not be used afterwards.
+     *
+     * @throws IOException
+     *             if the file cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.force();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * In-order iterator over the keys of {@code this}.
+     */
+    private final class OffHeapSet3Iterator implements Iterator<byte[]> {
+
+        /**
+         * Slots whose keys and right subtrees are still to be visited.
+         */
+        private final int[] stack = new int[MAX_HEIGHT];
+
+        /**
+         * Number of slots on the stack.
+         */
+        private int top;
+
+        /**
+         * No-argument constructor.
+         */
+        OffHeapSet3Iterator() {
+            this.pushLeftSpine(OffHeapSet3.this.root);
+        }
+
+        /**
+         * Pushes {@code t} and all its left descendants on the stack.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(int t) {
+            int n = t;
+            while (n != NIL) {
+                this.stack[this.top] = n;
+                this.top++;
+                n = OffHeapSet3.this.left(n);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.top > 0;
+        }
+
+        @Override
+        public byte[] next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.top--;
+            int n = this.stack[this.top];
+            this.pushLeftSpine(OffHeapSet3.this.right(n));
+            return OffHeapSet3.this.key(n);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
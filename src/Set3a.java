@@ -1,13 +1,36 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
 
-import components.binarytree.BinaryTree;
-import components.binarytree.BinaryTree1;
 import components.set.Set;
 import components.set.SetSecondary;
 
 /**
- * {@code Set} represented as a {@code BinaryTree} (maintained as a binary
- * search tree) of elements with implementations of primary methods.
+ * {@code Set} represented as a binary tree of {@code Node}s (maintained as a
+ * height-balanced AVL binary search tree) of elements with implementations of
+ * primary methods.
  *
  * @param <T>
  *            type of {@code Set} elements
@@ -18,9 +41,16 @@ import components.set.SetSecondary;
  *  [tree satisfies the binary search tree properties as described in the
  *   slides with the ordering reported by compareTo for T, including that
  *   it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [for every node n of tree, the heights of the left and right subtrees of
+ *   n differ by at most one, n.height is the height of the subtree rooted
+ *   at n, and n.size is the number of nodes of that subtree]
  * </pre>
- * @convention IS_BST($this.tree)
- * @correspondence this = labels($this.tree)
+ * @convention IS_BST($this.root) and IS_AVL($this.root)
+ * @correspondence this = labels($this.root)
  *
  * @author Zheyuan Gao
  * @author Cedric Fausey
@@ -33,292 +63,2525 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
 
     /**
-     * Elements included in {@code this}.
+     * Node of the AVL tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of {@code this}.
+         */
+        private T label;
+
+        /**
+         * Left subtree, or null if empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Right subtree, or null if empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Height of the subtree rooted at {@code this}.
+         */
+        private int height;
+
+        /**
+         * Number of nodes in the subtree rooted at {@code this}.
+         */
+        private int size;
+
+        /**
+         * Constructor of a leaf node.
+         *
+         * @param label
+         *            the label of the new node
+         */
+        Node(T label) {
+            this.label = label;
+            this.height = 1;
+            this.size = 1;
+        }
+
+    }
+
+    /**
+     * Work done by one kernel operation, counted as it is done while metrics
+     * are enabled; the tree methods take null instead when they are not.
+     */
+    private static final class OperationCounts {
+
+        /**
+         * Number of nodes on the search path.
+         */
+        private int depth;
+
+        /**
+         * Number of calls to compareTo.
+         */
+        private int comparisons;
+
+        /**
+         * Number of nodes visited.
+         */
+        private int visited;
+
+        /**
+         * Number of nodes allocated.
+         */
+        private int allocations;
+
+        /**
+         * Sets every count to 0.
+         */
+        void reset() {
+            this.depth = 0;
+            this.comparisons = 0;
+            this.visited = 0;
+            this.allocations = 0;
+        }
+
+        /**
+         * Counts a node of the search path, compared once with the label
+         * searched for.
+         */
+        void compared() {
+            this.depth++;
+            this.comparisons++;
+            this.visited++;
+        }
+
+        /**
+         * Counts a node of the search path reached without a comparison.
+         */
+        void stepped() {
+            this.depth++;
+            this.visited++;
+        }
+
+        /**
+         * Counts a node visited off the search path.
+         */
+        void visitedOffPath() {
+            this.visited++;
+        }
+
+        /**
+         * Counts a node allocation.
+         */
+        void allocated() {
+            this.allocations++;
+        }
+
+    }
+
+    /**
+     * Root of the tree of elements included in {@code this}, or null if
+     * {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Maximum height of an AVL tree with fewer than 2^31 nodes is 45; the
+     * search path scratch space is given some slack beyond that.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Scratch space holding the search path of the current update, so that
+     * kernel methods need neither recursion nor per-call allocation.
+     */
+    @SuppressWarnings("unchecked")
+    private final Node<T>[] path = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+
+    /**
+     * Number of times the tree of {@code this} has been changed, so that
+     * iterators can detect concurrent modification.
+     */
+    private int modCount;
+
+    /**
+     * Metrics of the kernel operations, or null if they are disabled.
      */
-    private BinaryTree<T> tree;
+    private Set3aMetrics metrics;
 
     /**
-     * Returns whether {@code x} is in {@code t}.
+     * Counts of the kernel operation being measured, or null if metrics are
+     * disabled.
+     */
+    private OperationCounts counts;
+
+    /**
+     * Bloom filter in front of {@code contains}, or null if there is none.
+     */
+    private Set3aBloomFilter filter;
+
+    /**
+     * Sum of the hash codes of the elements, if {@code hashModCount} is
+     * {@code modCount}.
+     */
+    private int hash;
+
+    /**
+     * Value of {@code modCount} with which {@code hash} is in step; kernel
+     * methods keep it so, and any other change leaves it behind until the
+     * next {@code hashCode} recomputes the sum.
+     */
+    private int hashModCount;
+
+    /**
+     * Value of {@code modCount} with which {@code filter} is in step; any
+     * other change than those made by the kernel methods leaves it behind,
+     * and the filter is then rebuilt before its next use.
+     */
+    private int filterModCount;
+
+    /**
+     * Returns the height of {@code t}.
+     *
+     * @param t
+     *            the tree, or null for the empty tree
+     * @return the height of t
+     * @ensures height = [height of t]
+     */
+    private static int height(Node<?> t) {
+        int h = 0;
+        if (t != null) {
+            h = t.height;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the number of nodes of {@code t}.
+     *
+     * @param t
+     *            the tree, or null for the empty tree
+     * @return the size of t
+     * @ensures size = |t|
+     */
+    private static int size(Node<?> t) {
+        int n = 0;
+        if (t != null) {
+            n = t.size;
+        }
+        return n;
+    }
+
+    /**
+     * Recomputes the height and size of {@code t} from those of its subtrees.
+     *
+     * @param t
+     *            the node to update
+     * @updates t.height, t.size
+     * @requires t /= null and [heights and sizes of the subtrees of t are
+     *           correct]
+     * @ensures <pre>
+     * t.height = 1 + max(height(t.left), height(t.right))  and
+     *  t.size = 1 + size(t.left) + size(t.right)
+     * </pre>
+     */
+    private static void update(Node<?> t) {
+        t.height = 1 + Math.max(height(t.left), height(t.right));
+        t.size = 1 + size(t.left) + size(t.right);
+    }
+
+    /**
+     * Rotates {@code t} to the right and returns the new root.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
+     *            type of the labels
      * @param t
-     *            the {@code BinaryTree} to be searched
-     * @param x
-     *            the label to be searched for
-     * @return true if t contains x, false otherwise
-     * @requires IS_BST(t)
-     * @ensures isInTree = (x is in labels(t))
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= null and t.left /= null
+     * @ensures IS_BST(rotateRight) if IS_BST(t) and labels(rotateRight) =
+     *          labels(t)
      */
-    private static <T extends Comparable<T>> boolean isInTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
+    private static <T> Node<T> rotateRight(Node<T> t) {
+        Node<T> l = t.left;
+        t.left = l.right;
+        l.right = t;
+        update(t);
+        update(l);
+        return l;
+    }
 
-        boolean found = false;
-        BinaryTree<T> lt = new BinaryTree1<>();
-        BinaryTree<T> rt = new BinaryTree1<>();
+    /**
+     * Rotates {@code t} to the left and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= null and t.right /= null
+     * @ensures IS_BST(rotateLeft) if IS_BST(t) and labels(rotateLeft) =
+     *          labels(t)
+     */
+    private static <T> Node<T> rotateLeft(Node<T> t) {
+        Node<T> r = t.right;
+        t.right = r.left;
+        r.left = t;
+        update(t);
+        update(r);
+        return r;
+    }
 
-        /*
-         * If t is non-empty tree. We can continue the searching.
-         */
-        if (t.height() > 0) {
-            T root = t.disassemble(lt, rt);
+    /**
+     * Restores the AVL property at {@code t}, whose subtrees are AVL trees
+     * with heights differing by at most two, and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the root of the tree to rebalance
+     * @return the new root
+     * @requires t /= null and IS_AVL(t.left) and IS_AVL(t.right) and
+     *           |height(t.left) - height(t.right)| <= 2
+     * @ensures IS_AVL(balance) and labels(balance) = labels(t)
+     */
+    private static <T> Node<T> balance(Node<T> t) {
+        Node<T> result = t;
+        int diff = height(t.left) - height(t.right);
+        if (diff > 1) {
             /*
-             * If the root == x, set found = true.
+             * Left-heavy: a left-right case needs a rotation of the left
+             * subtree first.
              */
-            if (root.equals(x)) {
-                found = true;
+            if (height(t.left.left) < height(t.left.right)) {
+                t.left = rotateLeft(t.left);
             }
+            result = rotateRight(t);
+        } else if (diff < -1) {
             /*
-             * If the root > x, continue searching the left tree.
+             * Right-heavy: a right-left case needs a rotation of the right
+             * subtree first.
              */
-            if (root.compareTo(x) > 0) {
-                found = isInTree(lt, x);
+            if (height(t.right.right) < height(t.right.left)) {
+                t.right = rotateRight(t.right);
             }
+            result = rotateLeft(t);
+        } else {
+            update(t);
+        }
+        return result;
+    }
+
+    /**
+     * Rebalances, from the bottom up, the nodes {@code path[0, depth)} of a
+     * root-to-node path just below which a single node was linked in or
+     * unlinked, and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param root
+     *            the root of the tree, which is path[0] when depth > 0
+     * @param path
+     *            the path of nodes from the root
+     * @param depth
+     *            the number of nodes on the path
+     * @return the new root
+     * @requires <pre>
+     * IS_BST(root)  and  [path[0, depth) is a path from root]  and
+     *  [every subtree not containing a node of path[0, depth) is IS_AVL]  and
+     *  [the subtrees of every node of path[0, depth) differ in height by at
+     *   most two]
+     * </pre>
+     * @ensures IS_BST(fixPath) and IS_AVL(fixPath) and labels(fixPath) =
+     *          labels(root)
+     */
+    private static <T> Node<T> fixPath(Node<T> root, Node<T>[] path,
+            int depth) {
+        Node<T> result = root;
+        int i = depth - 1;
+        while (i >= 0) {
+            Node<T> t = path[i];
+            Node<T> b = balance(t);
             /*
-             * If the root < x, continue searching the right tree.
+             * Link the rebalanced subtree into its parent, or make it the new
+             * root.
              */
-            if (root.compareTo(x) < 0) {
-                found = isInTree(rt, x);
+            if (i == 0) {
+                result = b;
+            } else if (path[i - 1].left == t) {
+                path[i - 1].left = b;
+            } else {
+                path[i - 1].right = b;
             }
             /*
-             * Restore the tree.
+             * Every node on the path has its size changed, so the walk goes
+             * all the way up; clearing the path as it goes keeps removed
+             * nodes from staying reachable.
              */
-            t.assemble(root, lt, rt);
+            path[i] = null;
+            i--;
         }
-        /*
-         * If the tree is empty, just return found initial value.
-         */
+        return result;
+    }
 
-        return found;
+    /**
+     * Returns the node of {@code t} whose label is {@code x}, or null if
+     * there is none.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the label to be searched for
+     * @return the node labeled x, or null
+     * @requires IS_BST(t)
+     * @ensures findInTree = [the node of t labeled x, or null if x is not in
+     *          labels(t)]
+     */
+    private static <T extends Comparable<T>> Node<T> findInTree(Node<T> t,
+            T x) {
+        return findInTree(t, x, null);
+    }
 
+    /**
+     * Returns the node of {@code t} whose label is {@code x}, or null if
+     * there is none, counting the work done in {@code counts} unless it is
+     * null.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the label to be searched for
+     * @param counts
+     *            the counts to update, or null
+     * @return the node labeled x, or null
+     * @updates counts
+     * @requires IS_BST(t)
+     * @ensures findInTree = [the node of t labeled x, or null if x is not in
+     *          labels(t)]
+     */
+    private static <T extends Comparable<T>> Node<T> findInTree(Node<T> t,
+            T x, OperationCounts counts) {
+        Node<T> n = t;
+        int c = -1;
+        while (n != null && c != 0) {
+            c = x.compareTo(n.label);
+            if (counts != null) {
+                counts.compared();
+            }
+            if (c < 0) {
+                n = n.left;
+            } else if (c > 0) {
+                n = n.right;
+            }
+        }
+        return n;
     }
 
     /**
-     * Inserts {@code x} in {@code t}.
+     * Inserts {@code x} in {@code t}, unless a label equal to it is already
+     * there, and returns the new root. Presence is detected during the one
+     * descent, in which case t is returned unchanged.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
+     *            type of the labels
      * @param t
-     *            the {@code BinaryTree} to be searched
+     *            the tree in which to insert
      * @param x
      *            the label to be inserted
+     * @param path
+     *            scratch space for the search path
+     * @param counts
+     *            the counts of the work done to update, or null
+     * @return the new root
      * @aliases reference {@code x}
-     * @updates t
-     * @requires IS_BST(t) and x is not in labels(t)
-     * @ensures IS_BST(t) and labels(t) = labels(#t) union {x}
+     * @updates path, counts
+     * @requires IS_BST(t) and IS_AVL(t) and |path| > height(t)
+     * @ensures <pre>
+     * IS_BST(insertInTree)  and  IS_AVL(insertInTree)  and
+     *  labels(insertInTree) = labels(t) union {x}  and
+     *  [insertInTree = t if x is in labels(t)]
+     * </pre>
      */
-    private static <T extends Comparable<T>> void insertInTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        BinaryTree<T> lt = new BinaryTree1<>();
-        BinaryTree<T> rt = new BinaryTree1<>();
-        /*
-         * If t is empty, make x the root of the updated t.
-         */
-        if (t.height() == 0) {
-            t.assemble(x, lt, rt);
+    private static <T extends Comparable<T>> Node<T> insertInTree(Node<T> t,
+            T x, Node<T>[] path, OperationCounts counts) {
+        Node<T> result;
+        if (t == null) {
+            /*
+             * If t is empty, x becomes the only node.
+             */
+            result = new Node<T>(x);
+            if (counts != null) {
+                counts.allocated();
+            }
         } else {
             /*
-             * If t is non-empty. Check if x is greater than the root of the t
-             * to decide which part of the tree should it be insert.
+             * Walk down to the empty subtree where x belongs, remembering the
+             * path, then link x there and rebalance on the way back up.
              */
-            T root = t.disassemble(lt, rt);
-            if (root.compareTo(x) > 0) {
+            int depth = 0;
+            Node<T> parent = null;
+            Node<T> n = t;
+            int c = 1;
+            while (n != null && c != 0) {
+                c = x.compareTo(n.label);
+                if (counts != null) {
+                    counts.compared();
+                }
+                if (c != 0) {
+                    path[depth] = n;
+                    depth++;
+                    parent = n;
+                    if (c < 0) {
+                        n = n.left;
+                    } else {
+                        n = n.right;
+                    }
+                }
+            }
+            if (c == 0) {
                 /*
-                 * If the x is less than the root of t, insert it in the left
-                 * tree.
+                 * x is present: nothing is rebalanced, so the path is
+                 * cleared here rather than by fixPath.
                  */
-                insertInTree(lt, x);
+                Arrays.fill(path, 0, depth, null);
+                result = t;
             } else {
-                /*
-                 * If the x is greater than the root of t, insert it in the
-                 * right tree.
-                 */
-                insertInTree(rt, x);
+                if (c < 0) {
+                    parent.left = new Node<T>(x);
+                } else {
+                    parent.right = new Node<T>(x);
+                }
+                if (counts != null) {
+                    counts.allocated();
+                }
+                result = fixPath(t, path, depth);
             }
-            /*
-             * Update and assemble the original tree.
-             */
-            t.assemble(root, lt, rt);
         }
+        return result;
     }
 
     /**
-     * Removes and returns the smallest (left-most) label in {@code t}.
+     * Unlinks the node with the smallest (left-most) label from {@code t},
+     * returns that label, and records the new root in {@code path[0]}.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
+     *            type of the labels
      * @param t
-     *            the {@code BinaryTree} from which to remove the label
-     * @return the smallest label in the given {@code BinaryTree}
-     * @updates t
-     * @requires IS_BST(t) and |t| > 0
+     *            the tree from which to remove the smallest label
+     * @param path
+     *            scratch space for the search path
+     * @param counts
+     *            the counts of the work done to update, or null
+     * @return the smallest label in t
+     * @updates path, counts
+     * @requires IS_BST(t) and IS_AVL(t) and t /= null and |path| > height(t)
      * @ensures <pre>
-     * IS_BST(t)  and  removeSmallest = [the smallest label in #t]  and
-     *  labels(t) = labels(#t) \ {removeSmallest}
+     * removeSmallest = [the smallest label in t]  and
+     *  IS_BST(path[0])  and  IS_AVL(path[0])  and
+     *  labels(path[0]) = labels(t) \ {removeSmallest}
      * </pre>
      */
-    private static <T> T removeSmallest(BinaryTree<T> t) {
-        assert t != null : "Violation of: t is not null";
-
-        T smallest;
-        BinaryTree<T> lt = new BinaryTree1<>();
-        BinaryTree<T> rt = new BinaryTree1<>();
+    private static <T> T removeSmallest(Node<T> t, Node<T>[] path,
+            OperationCounts counts) {
+        int depth = 0;
+        Node<T> n = t;
+        while (n.left != null) {
+            path[depth] = n;
+            depth++;
+            n = n.left;
+            if (counts != null) {
+                counts.stepped();
+            }
+        }
+        if (counts != null) {
+            counts.stepped();
+        }
         /*
-         * First disassemble the t.
+         * The left-most node has no left subtree: its right subtree (which
+         * has height at most one) replaces it.
          */
-        T root = t.disassemble(lt, rt);
-
-        if (lt.height() > 0) {
-            /*
-             * If the root have a non-empty left subtree, then remove the
-             * smallest label from the left subtree.
-             */
-            smallest = removeSmallest(lt);
-            /*
-             * Update and assemble the original tree.
-             */
-            t.assemble(root, lt, rt);
+        Node<T> newRoot;
+        if (depth == 0) {
+            newRoot = n.right;
         } else {
-            /*
-             * If the root have no left subtree, then the root is the smallest
-             * label of t. Make the right tree the new value of t and return the
-             * root.
-             */
-            smallest = root;
-            t.transferFrom(rt);
+            path[depth - 1].left = n.right;
+            newRoot = fixPath(t, path, depth);
         }
-
-        return smallest;
-
+        path[0] = newRoot;
+        return n.label;
     }
 
     /**
-     * Finds label {@code x} in {@code t}, removes it from {@code t}, and
-     * returns it.
+     * Unlinks the node labeled {@code x} from {@code t}, if there is one, and
+     * returns its label, or null if there is none; records the new root in
+     * {@code path[0]}.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
+     *            type of the labels
      * @param t
-     *            the {@code BinaryTree} from which to remove label {@code x}
+     *            the tree from which to remove label {@code x}
      * @param x
      *            the label to be removed
-     * @return the removed label
-     * @updates t
-     * @requires IS_BST(t) and x is in labels(t)
+     * @param path
+     *            scratch space for the search path
+     * @param counts
+     *            the counts of the work done to update, or null
+     * @return the removed label, or null
+     * @updates path, counts
+     * @requires IS_BST(t) and IS_AVL(t) and |path| > height(t)
      * @ensures <pre>
-     * IS_BST(t)  and  removeFromTree = x  and
-     *  labels(t) = labels(#t) \ {x}
+     * IS_BST(path[0])  and  IS_AVL(path[0])  and
+     *  labels(path[0]) = labels(t) \ {x}  and
+     *  removeFromTree = [x if x is in labels(t), or else null]  and
+     *  [path[0] = t if x is not in labels(t)]
      * </pre>
      */
-    private static <T extends Comparable<T>> T removeFromTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        T target;
-        BinaryTree<T> lt = new BinaryTree1<>();
-        BinaryTree<T> rt = new BinaryTree1<>();
-        T root = t.disassemble(lt, rt);
-
+    private static <T extends Comparable<T>> T removeFromTree(Node<T> t, T x,
+            Node<T>[] path, OperationCounts counts) {
         /*
-         * If the root != x, then search the subtrees for x.
+         * Walk down to the node labeled x, remembering the path.
          */
-        if (!root.equals(x)) {
-
-            if (x.compareTo(root) < 0) {
-                /*
-                 * If the root is greater than x, then search the target in the
-                 * left subtree.
-                 */
-                target = removeFromTree(lt, x);
-            } else {
+        int depth = 0;
+        Node<T> n = t;
+        int c = 1;
+        while (n != null && c != 0) {
+            c = x.compareTo(n.label);
+            if (counts != null) {
+                counts.compared();
+            }
+            if (c != 0) {
+                path[depth] = n;
+                depth++;
+                if (c < 0) {
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+        T target = null;
+        Node<T> newRoot = t;
+        if (n != null) {
+            target = n.label;
+            if (n.left != null && n.right != null) {
                 /*
-                 * If the root is less than x, then search the target in the
-                 * right subtree.
+                 * Both subtrees are non-empty: move the smallest label of the
+                 * right subtree into n, and unlink that node instead.
                  */
-                target = removeFromTree(rt, x);
-
+                path[depth] = n;
+                depth++;
+                Node<T> s = n.right;
+                if (counts != null) {
+                    counts.visitedOffPath();
+                }
+                while (s.left != null) {
+                    path[depth] = s;
+                    depth++;
+                    s = s.left;
+                    if (counts != null) {
+                        counts.visitedOffPath();
+                    }
+                }
+                n.label = s.label;
+                n = s;
             }
             /*
-             * Update and assemble the original tree.
+             * n now has at most one non-empty subtree, which replaces it.
              */
-            t.assemble(root, lt, rt);
-
+            Node<T> child = n.left;
+            if (child == null) {
+                child = n.right;
+            }
+            if (depth == 0) {
+                newRoot = child;
+            } else {
+                if (path[depth - 1].left == n) {
+                    path[depth - 1].left = child;
+                } else {
+                    path[depth - 1].right = child;
+                }
+                newRoot = fixPath(t, path, depth);
+            }
         } else {
-            target = root;
             /*
-             * If root == r, we have two choice: 1. If right tree is non-empty,
-             * make the its smallest label to be the mew root of the t. 2. If
-             * the right tree is empty, make the left subtree be the new t.
+             * x is absent: nothing is rebalanced, so the path is cleared
+             * here rather than by fixPath.
              */
-            if (rt.height() > 0) {
-                /*
-                 * If right tree is non-empty, make the its smallest label to be
-                 * the mew root of the t.
-                 */
-                t.assemble(removeSmallest(rt), lt, rt);
-            } else {
-                /*
-                 * If the right tree is empty, make the left subtree be the new
-                 * t.
-                 */
-                t.transferFrom(lt);
-            }
-
+            Arrays.fill(path, 0, depth, null);
         }
-
+        path[0] = newRoot;
         return target;
-
     }
 
     /**
-     * Creator of initial representation.
+     * Builds a perfectly balanced tree from the next {@code n} labels
+     * delivered by {@code labels}, and returns its root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param labels
+     *            the source of labels, in increasing order
+     * @param n
+     *            the number of labels to take
+     * @return the root of the new tree
+     * @updates labels
+     * @requires n >= 0 and [labels has at least n more labels, in strictly
+     *           increasing order]
+     * @ensures <pre>
+     * IS_BST(buildTree)  and  IS_AVL(buildTree)  and
+     *  labels(buildTree) = [the first n labels of #labels]  and
+     *  labels = [#labels without its first n labels]
+     * </pre>
      */
-    private void createNewRep() {
-
-        this.tree = new BinaryTree1<T>();
-
+    private static <T> Node<T> buildTree(Iterator<? extends T> labels,
+            int n) {
+        Node<T> result = null;
+        if (n > 0) {
+            /*
+             * Build the left half, then the root, then the right half, so that
+             * labels are consumed in order.
+             */
+            int leftSize = (n - 1) / 2;
+            Node<T> l = buildTree(labels, leftSize);
+            result = new Node<T>(labels.next());
+            result.left = l;
+            result.right = buildTree(labels, n - 1 - leftSize);
+            update(result);
+        }
+        return result;
     }
 
-    /*
-     * Constructors -----------------------------------------------------------
-     */
-
     /**
-     * No-argument constructor.
+     * Reports whether the labels of {@code s} are in strictly increasing
+     * order.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param s
+     *            the set to check
+     * @return true iff the in-order labels of s are strictly increasing
+     * @ensures isStrictlyIncreasing = [the in-order labels of $s.root are in
+     *          strictly increasing order]
      */
-    public Set3a() {
-
-        this.createNewRep();
-
+    private static <T extends Comparable<T>> boolean isStrictlyIncreasing(
+            Set3a<T> s) {
+        boolean result = true;
+        T previous = null;
+        Iterator<T> it = s.iterator();
+        while (result && it.hasNext()) {
+            T x = it.next();
+            result = previous == null || previous.compareTo(x) < 0;
+            previous = x;
+        }
+        return result;
     }
 
-    /*
-     * Standard methods -------------------------------------------------------
+    /**
+     * Returns the distinct elements of {@code batch} in increasing order.
+     *
+     * @param <T>
+     *            type of the elements
+     * @param batch
+     *            the elements
+     * @return the sorted, duplicate-free elements
+     * @requires [batch contains no null]
+     * @ensures <pre>
+     * [the entries of sortedDistinct are the elements of batch]  and
+     *  [sortedDistinct is in strictly increasing order]
+     * </pre>
      */
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public final Set<T> newInstance() {
-        try {
-            return this.getClass().getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new AssertionError(
-                    "Cannot construct object of type " + this.getClass());
+    private static <T extends Comparable<T>> T[] sortedDistinct(
+            Collection<? extends T> batch) {
+        @SuppressWarnings("unchecked")
+        T[] result = (T[]) batch.toArray(new Comparable<?>[batch.size()]);
+        Arrays.sort(result);
+        int m = 0;
+        for (T x : result) {
+            if (m == 0 || result[m - 1].compareTo(x) != 0) {
+                result[m] = x;
+                m++;
+            }
         }
+        return Arrays.copyOf(result, m);
     }
 
-    @Override
-    public final void clear() {
-        this.createNewRep();
-    }
-
-    @Override
+    /**
+     * Merges the labels delivered by {@code labels} with the entries of
+     * {@code batch}, both in increasing order, and returns the labels of the
+     * union if {@code union}, or of the difference {@code labels \ batch}
+     * otherwise.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param labels
+     *            the first source of labels
+     * @param n
+     *            the number of labels delivered by labels
+     * @param batch
+     *            the second source of labels
+     * @param union
+     *            whether to merge into the union rather than the difference
+     * @return the merged labels, in strictly increasing order
+     * @updates labels
+     * @requires <pre>
+     * [labels delivers n labels, in strictly increasing order]  and
+     *  [batch is in strictly increasing order]
+     * </pre>
+     * @ensures <pre>
+     * merge = [labels(#labels) union entries(batch) in increasing order if
+     *  union, or labels(#labels) \ entries(batch) otherwise]  and
+     *  labels = <>
+     * </pre>
+     */
+    private static <T extends Comparable<T>> List<T> merge(
+            Iterator<T> labels, int n, T[] batch, boolean union) {
+        List<T> result = new ArrayList<>(n + batch.length);
+        int j = 0;
+        while (labels.hasNext()) {
+            T x = labels.next();
+            int c = -1;
+            boolean before = j < batch.length;
+            while (before) {
+                c = batch[j].compareTo(x);
+                before = c < 0;
+                if (before) {
+                    if (union) {
+                        result.add(batch[j]);
+                    }
+                    j++;
+                    before = j < batch.length;
+                }
+            }
+            if (union || c != 0) {
+                result.add(x);
+            }
+            if (c == 0) {
+                j++;
+            }
+        }
+        if (union) {
+            while (j < batch.length) {
+                result.add(batch[j]);
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Result of splitting a tree around a label.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class Split<T> {
+
+        /**
+         * Tree of the labels smaller than the split label.
+         */
+        private Node<T> left;
+
+        /**
+         * Node labeled with the split label, or null if there is none.
+         */
+        private Node<T> mid;
+
+        /**
+         * Tree of the labels larger than the split label.
+         */
+        private Node<T> right;
+
+    }
+
+    /**
+     * Joins {@code l}, node {@code k} and {@code r} into one tree, and returns
+     * its root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param l
+     *            the tree of labels smaller than k.label
+     * @param k
+     *            the middle node
+     * @param r
+     *            the tree of labels larger than k.label
+     * @return the root of the joined tree
+     * @requires <pre>
+     * IS_BST(l)  and  IS_AVL(l)  and  IS_BST(r)  and  IS_AVL(r)  and
+     *  k /= null  and  [labels(l) < k.label < labels(r)]
+     * </pre>
+     * @ensures <pre>
+     * IS_BST(join)  and  IS_AVL(join)  and
+     *  labels(join) = labels(l) union {k.label} union labels(r)
+     * </pre>
+     */
+    private static <T> Node<T> join(Node<T> l, Node<T> k, Node<T> r) {
+        Node<T> result;
+        if (height(l) > height(r) + 1) {
+            /*
+             * l is taller: join down its right spine.
+             */
+            l.right = join(l.right, k, r);
+            result = balance(l);
+        } else if (height(r) > height(l) + 1) {
+            /*
+             * r is taller: join down its left spine.
+             */
+            r.left = join(l, k, r.left);
+            result = balance(r);
+        } else {
+            k.left = l;
+            k.right = r;
+            update(k);
+            result = k;
+        }
+        return result;
+    }
+
+    /**
+     * Unlinks the node with the smallest label from {@code t}, records it in
+     * {@code out.mid}, and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @param out
+     *            receives the unlinked node
+     * @return the new root
+     * @updates out.mid
+     * @requires IS_BST(t) and IS_AVL(t) and t /= null
+     * @ensures <pre>
+     * out.mid = [the node with the smallest label in t]  and
+     *  IS_BST(removeFirst)  and  IS_AVL(removeFirst)  and
+     *  labels(removeFirst) = labels(t) \ {out.mid.label}
+     * </pre>
+     */
+    private static <T> Node<T> removeFirst(Node<T> t, Split<T> out) {
+        Node<T> result;
+        if (t.left == null) {
+            out.mid = t;
+            result = t.right;
+        } else {
+            t.left = removeFirst(t.left, out);
+            result = balance(t);
+        }
+        return result;
+    }
+
+    /**
+     * Joins {@code l} and {@code r} into one tree, and returns its root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param l
+     *            the tree of smaller labels
+     * @param r
+     *            the tree of larger labels
+     * @param out
+     *            scratch space
+     * @return the root of the joined tree
+     * @updates out
+     * @requires <pre>
+     * IS_BST(l)  and  IS_AVL(l)  and  IS_BST(r)  and  IS_AVL(r)  and
+     *  [labels(l) < labels(r)]
+     * </pre>
+     * @ensures IS_BST(join2) and IS_AVL(join2) and labels(join2) = labels(l)
+     *          union labels(r)
+     */
+    private static <T> Node<T> join2(Node<T> l, Node<T> r, Split<T> out) {
+        Node<T> result;
+        if (l == null) {
+            result = r;
+        } else if (r == null) {
+            result = l;
+        } else {
+            Node<T> rest = removeFirst(r, out);
+            result = join(l, out.mid, rest);
+        }
+        return result;
+    }
+
+    /**
+     * Splits {@code t} around {@code x} into {@code out}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to split
+     * @param x
+     *            the split label
+     * @param out
+     *            receives the result
+     * @updates out
+     * @requires IS_BST(t) and IS_AVL(t)
+     * @ensures <pre>
+     * [out.left, out.right are IS_BST and IS_AVL trees of the labels of t
+     *  smaller, respectively larger, than x]  and
+     *  [out.mid is the node of t labeled x, or null if there is none]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> void split(Node<T> t, T x,
+            Split<T> out) {
+        if (t == null) {
+            out.left = null;
+            out.mid = null;
+            out.right = null;
+        } else {
+            int c = x.compareTo(t.label);
+            if (c == 0) {
+                out.left = t.left;
+                out.mid = t;
+                out.right = t.right;
+            } else if (c < 0) {
+                Node<T> r = t.right;
+                split(t.left, x, out);
+                out.right = join(out.right, t, r);
+            } else {
+                Node<T> l = t.left;
+                split(t.right, x, out);
+                out.left = join(l, t, out.left);
+            }
+        }
+    }
+
+    /**
+     * Returns the union of {@code t1} and {@code t2}, reusing their nodes,
+     * and appends the labels they have in common to {@code common}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t1
+     *            the first tree
+     * @param t2
+     *            the second tree
+     * @param common
+     *            receives the common labels
+     * @param out
+     *            scratch space
+     * @return the root of the union
+     * @updates common, out
+     * @requires IS_BST(t1) and IS_AVL(t1) and IS_BST(t2) and IS_AVL(t2)
+     * @ensures <pre>
+     * IS_BST(union)  and  IS_AVL(union)  and
+     *  labels(union) = labels(t1) union labels(t2)  and
+     *  common = #common * [labels(t1) intersection labels(t2) in increasing
+     *  order]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> union(Node<T> t1,
+            Node<T> t2, List<T> common, Split<T> out) {
+        Node<T> result;
+        if (t1 == null) {
+            result = t2;
+        } else if (t2 == null) {
+            result = t1;
+        } else {
+            split(t2, t1.label, out);
+            Node<T> r2 = out.right;
+            boolean found = out.mid != null;
+            Node<T> l = union(t1.left, out.left, common, out);
+            if (found) {
+                common.add(t1.label);
+            }
+            Node<T> r = union(t1.right, r2, common, out);
+            result = join(l, t1, r);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intersection of {@code t1} and {@code t2}, reusing the nodes
+     * of {@code t1} and leaving {@code t2} unchanged.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t1
+     *            the first tree
+     * @param t2
+     *            the second tree
+     * @param common
+     *            receives the common labels
+     * @param out
+     *            scratch space
+     * @return the root of the intersection
+     * @updates common, out
+     * @requires IS_BST(t1) and IS_AVL(t1) and IS_BST(t2)
+     * @ensures <pre>
+     * IS_BST(intersection)  and  IS_AVL(intersection)  and
+     *  labels(intersection) = labels(t1) intersection labels(t2)  and
+     *  common = #common * [labels(intersection) in increasing order]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> intersection(Node<T> t1,
+            Node<T> t2, List<T> common, Split<T> out) {
+        Node<T> result = null;
+        if (t1 != null && t2 != null) {
+            split(t1, t2.label, out);
+            Node<T> m = out.mid;
+            Node<T> r1 = out.right;
+            Node<T> l = intersection(out.left, t2.left, common, out);
+            if (m != null) {
+                common.add(m.label);
+            }
+            Node<T> r = intersection(r1, t2.right, common, out);
+            if (m != null) {
+                result = join(l, m, r);
+            } else {
+                result = join2(l, r, out);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the difference of {@code t1} and {@code t2}, reusing the nodes
+     * of {@code t1} and leaving {@code t2} unchanged, and appends the labels
+     * they have in common to {@code common}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t1
+     *            the first tree
+     * @param t2
+     *            the second tree
+     * @param common
+     *            receives the common labels
+     * @param out
+     *            scratch space
+     * @return the root of the difference
+     * @updates common, out
+     * @requires IS_BST(t1) and IS_AVL(t1) and IS_BST(t2)
+     * @ensures <pre>
+     * IS_BST(difference)  and  IS_AVL(difference)  and
+     *  labels(difference) = labels(t1) \ labels(t2)  and
+     *  common = #common * [labels(t1) intersection labels(t2) in increasing
+     *  order]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> difference(Node<T> t1,
+            Node<T> t2, List<T> common, Split<T> out) {
+        Node<T> result = t1;
+        if (t1 != null && t2 != null) {
+            split(t1, t2.label, out);
+            Node<T> m = out.mid;
+            Node<T> r1 = out.right;
+            Node<T> l = difference(out.left, t2.left, common, out);
+            if (m != null) {
+                common.add(m.label);
+            }
+            Node<T> r = difference(r1, t2.right, common, out);
+            result = join2(l, r, out);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the symmetric difference of {@code t1} and {@code t2}, reusing
+     * the nodes of {@code t1} and leaving {@code t2} unchanged, and appends
+     * the labels they have in common to {@code common}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t1
+     *            the first tree
+     * @param t2
+     *            the second tree
+     * @param common
+     *            receives the common labels
+     * @param out
+     *            scratch space
+     * @return the root of the symmetric difference
+     * @updates common, out
+     * @requires IS_BST(t1) and IS_AVL(t1) and IS_BST(t2) and IS_AVL(t2)
+     * @ensures <pre>
+     * IS_BST(symmetricDifference)  and  IS_AVL(symmetricDifference)  and
+     *  labels(symmetricDifference) =
+     *   (labels(t1) \ labels(t2)) union (labels(t2) \ labels(t1))  and
+     *  common = #common * [labels(t1) intersection labels(t2) in increasing
+     *  order]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> symmetricDifference(
+            Node<T> t1, Node<T> t2, List<T> common, Split<T> out) {
+        Node<T> result;
+        if (t2 == null) {
+            result = t1;
+        } else if (t1 == null) {
+            result = copy(t2);
+        } else {
+            split(t1, t2.label, out);
+            Node<T> m = out.mid;
+            Node<T> r1 = out.right;
+            Node<T> l = symmetricDifference(out.left, t2.left, common, out);
+            if (m != null) {
+                common.add(m.label);
+            }
+            Node<T> r = symmetricDifference(r1, t2.right, common, out);
+            if (m != null) {
+                result = join2(l, r, out);
+            } else {
+                result = join(l, new Node<T>(t2.label), r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of {@code t} made of new nodes.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to copy
+     * @return the root of the copy
+     * @ensures [copy has the same shape, labels and heights as t]
+     */
+    private static <T> Node<T> copy(Node<T> t) {
+        Node<T> result = null;
+        if (t != null) {
+            result = new Node<T>(t.label);
+            result.left = copy(t.left);
+            result.right = copy(t.right);
+            result.height = t.height;
+            result.size = t.size;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a {@code Set3a} with the same elements as {@code s}, which is
+     * {@code s} itself when it already is one.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param s
+     *            the set
+     * @return a Set3a with the elements of s
+     * @ensures asSet3a = s
+     */
+    private static <T extends Comparable<T>> Set3a<T> asSet3a(Set<T> s) {
+        Set3a<T> result;
+        if (s instanceof Set3a<?>) {
+            result = (Set3a<T>) s;
+        } else {
+            result = new Set3a<T>();
+            for (T x : s) {
+                result.add(x);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code t} has more than {@code cutoff} nodes, and so is
+     * worth splitting into parallel subtasks.
+     *
+     * @param t
+     *            the tree
+     * @param cutoff
+     *            the sequential cutoff
+     * @return whether t is above the cutoff
+     * @ensures isLarge = |t| > cutoff
+     */
+    private static boolean isLarge(Node<?> t, int cutoff) {
+        return size(t) > cutoff;
+    }
+
+    /**
+     * Fork-join task computing a union, intersection or difference of two
+     * trees with the same split and join algorithms as the sequential methods,
+     * solving the subproblems on either side of the split label in parallel.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class BulkTask<T extends Comparable<T>>
+            extends RecursiveAction {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Operation code for union.
+         */
+        static final int UNION = 0;
+
+        /**
+         * Operation code for intersection.
+         */
+        static final int INTERSECTION = 1;
+
+        /**
+         * Operation code for difference.
+         */
+        static final int DIFFERENCE = 2;
+
+        /**
+         * The operation to perform.
+         */
+        private final int op;
+
+        /**
+         * The first tree, whose nodes are reused.
+         */
+        private final transient Node<T> t1;
+
+        /**
+         * The second tree, whose nodes are reused for union and only read
+         * otherwise.
+         */
+        private final transient Node<T> t2;
+
+        /**
+         * The sequential cutoff.
+         */
+        private final int cutoff;
+
+        /**
+         * Root of the result.
+         */
+        private transient Node<T> root;
+
+        /**
+         * Root of the tree of labels common to t1 and t2 (unused for
+         * intersection, where it is root).
+         */
+        private transient Node<T> common;
+
+        /**
+         * Constructor.
+         *
+         * @param op
+         *            the operation
+         * @param t1
+         *            the first tree
+         * @param t2
+         *            the second tree
+         * @param cutoff
+         *            the sequential cutoff
+         */
+        BulkTask(int op, Node<T> t1, Node<T> t2, int cutoff) {
+            this.op = op;
+            this.t1 = t1;
+            this.t2 = t2;
+            this.cutoff = cutoff;
+        }
+
+        /**
+         * Solves the problem with the sequential methods.
+         */
+        private void computeSequentially() {
+            List<T> labels = new ArrayList<>();
+            Split<T> out = new Split<T>();
+            if (this.op == UNION) {
+                this.root = union(this.t1, this.t2, labels, out);
+            } else if (this.op == INTERSECTION) {
+                this.root = intersection(this.t1, this.t2, labels, out);
+            } else {
+                this.root = difference(this.t1, this.t2, labels, out);
+            }
+            if (this.op != INTERSECTION) {
+                this.common = buildTree(labels.iterator(), labels.size());
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (this.t1 == null || this.t2 == null
+                    || !(isLarge(this.t1, this.cutoff)
+                            || isLarge(this.t2, this.cutoff))) {
+                this.computeSequentially();
+            } else {
+                /*
+                 * Split one tree around the root label of the other, solve
+                 * both sides in parallel, and join the results around the
+                 * split node.
+                 */
+                Split<T> out = new Split<T>();
+                BulkTask<T> left;
+                BulkTask<T> right;
+                Node<T> k;
+                Node<T> m;
+                if (this.op == UNION) {
+                    split(this.t2, this.t1.label, out);
+                    k = this.t1;
+                    m = out.mid;
+                    left = new BulkTask<T>(this.op, this.t1.left, out.left,
+                            this.cutoff);
+                    right = new BulkTask<T>(this.op, this.t1.right, out.right,
+                            this.cutoff);
+                } else {
+                    split(this.t1, this.t2.label, out);
+                    k = out.mid;
+                    m = out.mid;
+                    left = new BulkTask<T>(this.op, out.left, this.t2.left,
+                            this.cutoff);
+                    right = new BulkTask<T>(this.op, out.right,
+                            this.t2.right, this.cutoff);
+                }
+                left.fork();
+                right.compute();
+                left.join();
+                /*
+                 * The static join of this class is shadowed by
+                 * ForkJoinTask.join, hence the qualified calls below.
+                 */
+                if (this.op == UNION) {
+                    this.root = Set3a.join(left.root, k, right.root);
+                } else if (this.op == INTERSECTION) {
+                    if (m != null) {
+                        this.root = Set3a.join(left.root, m, right.root);
+                    } else {
+                        this.root = join2(left.root, right.root, out);
+                    }
+                } else {
+                    this.root = join2(left.root, right.root, out);
+                }
+                if (this.op != INTERSECTION) {
+                    if (m != null) {
+                        this.common = Set3a.join(left.common, m, right.common);
+                    } else {
+                        this.common = join2(left.common, right.common, out);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Fork-join task building a perfectly balanced tree from a range of a
+     * sorted array.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class BuildTask<T> extends RecursiveTask<Node<T>> {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The labels.
+         */
+        private final transient T[] labels;
+
+        /**
+         * Start of the range, inclusive.
+         */
+        private final int lo;
+
+        /**
+         * End of the range, exclusive.
+         */
+        private final int hi;
+
+        /**
+         * The sequential cutoff.
+         */
+        private final int cutoff;
+
+        /**
+         * Constructor.
+         *
+         * @param labels
+         *            the labels
+         * @param lo
+         *            start of the range, inclusive
+         * @param hi
+         *            end of the range, exclusive
+         * @param cutoff
+         *            the sequential cutoff
+         */
+        BuildTask(T[] labels, int lo, int hi, int cutoff) {
+            this.labels = labels;
+            this.lo = lo;
+            this.hi = hi;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected Node<T> compute() {
+            int n = this.hi - this.lo;
+            Node<T> result;
+            if (n <= this.cutoff) {
+                result = buildTree(Arrays.asList(this.labels)
+                        .subList(this.lo, this.hi).iterator(), n);
+            } else {
+                /*
+                 * Same shape as buildTree: the left half gets the smaller
+                 * share of an uneven split.
+                 */
+                int mid = this.lo + (n - 1) / 2;
+                BuildTask<T> left = new BuildTask<T>(this.labels, this.lo, mid,
+                        this.cutoff);
+                BuildTask<T> right = new BuildTask<T>(this.labels, mid + 1,
+                        this.hi, this.cutoff);
+                left.fork();
+                Node<T> r = right.compute();
+                Node<T> l = left.join();
+                result = new Node<T>(this.labels[mid]);
+                result.left = l;
+                result.right = r;
+                update(result);
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Returns the label of {@code t} closest to {@code x} from below or from
+     * above, or null if there is none.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the label to be approached
+     * @param below
+     *            whether to look for labels smaller, rather than larger, than
+     *            x
+     * @param inclusive
+     *            whether x itself qualifies
+     * @return the closest qualifying label, or null
+     * @requires IS_BST(t)
+     * @ensures <pre>
+     * closest = [the largest label of t that is < x (<= x if inclusive)
+     *  when below, the smallest label of t that is > x (>= x if inclusive)
+     *  otherwise, or null if there is no such label]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> T closest(Node<T> t, T x,
+            boolean below, boolean inclusive) {
+        T result = null;
+        Node<T> n = t;
+        while (n != null) {
+            int c = x.compareTo(n.label);
+            if (c == 0 && inclusive) {
+                result = n.label;
+                n = null;
+            } else if (below) {
+                if (c > 0) {
+                    result = n.label;
+                    n = n.right;
+                } else {
+                    n = n.left;
+                }
+            } else {
+                if (c < 0) {
+                    result = n.label;
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A batch update rebuilds the whole tree, rather than splitting and
+     * joining, when this many times the batch size is at least the size of
+     * the tree.
+     */
+    private static final int REBUILD_RATIO = 4;
+
+    /**
+     * Maximum length of a range of {@code sortOrder} sorted by insertion.
+     */
+    private static final int INSERTION_SORT_CUTOFF = 16;
+
+    /**
+     * Stably sorts {@code order[lo, hi)}, a range of indices into
+     * {@code keys}, by the keys they index. Merge sort, skipping merges of
+     * ranges already in order, so that sorted input takes linear time.
+     *
+     * @param <T>
+     *            type of the keys
+     * @param keys
+     *            the keys
+     * @param order
+     *            the indices to sort
+     * @param scratch
+     *            scratch space for merging
+     * @param lo
+     *            the start of the range
+     * @param hi
+     *            the end of the range
+     * @updates order, scratch
+     * @requires 0 <= lo <= hi <= |order| = |scratch|
+     * @ensures <pre>
+     * [order[lo, hi) is a permutation of #order[lo, hi)]  and
+     *  [keys[order[i]] <= keys[order[i+1]] for lo <= i < hi-1]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> void sortOrder(T[] keys,
+            int[] order, int[] scratch, int lo, int hi) {
+        if (hi - lo <= INSERTION_SORT_CUTOFF) {
+            for (int i = lo + 1; i < hi; i++) {
+                int index = order[i];
+                T key = keys[index];
+                int j = i;
+                while (j > lo && keys[order[j - 1]].compareTo(key) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = index;
+            }
+        } else {
+            int mid = (lo + hi) >>> 1;
+            sortOrder(keys, order, scratch, lo, mid);
+            sortOrder(keys, order, scratch, mid, hi);
+            if (keys[order[mid - 1]].compareTo(keys[order[mid]]) > 0) {
+                /*
+                 * Merge the left half, moved aside, with the right half in
+                 * place; the merged prefix never overtakes the right half.
+                 */
+                System.arraycopy(order, lo, scratch, lo, mid - lo);
+                int i = lo;
+                int j = mid;
+                int d = lo;
+                while (i < mid) {
+                    if (j < hi
+                            && keys[order[j]].compareTo(keys[scratch[i]]) < 0) {
+                        order[d] = order[j];
+                        j++;
+                    } else {
+                        order[d] = scratch[i];
+                        i++;
+                    }
+                    d++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the labels {@code probes[order[0]]},
+     * {@code probes[order[1]]}, ... in {@code t}, in that (increasing)
+     * order, and sets the bits of {@code hits} at the indices of those found.
+     * Each search resumes from the previous one: the nodes where the previous
+     * search turned left bound the part of the tree still ahead, so the next
+     * search starts below the lowest of them whose label is greater than the
+     * probe, instead of at the root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @param probes
+     *            the labels to be searched for
+     * @param order
+     *            the indices of probes, sorted by label
+     * @param hits
+     *            the indices of the labels found
+     * @updates hits
+     * @requires <pre>
+     * IS_BST(t)  and  IS_AVL(t)  and  [order is a permutation of
+     *  [0, |probes|) with probes[order[i]] <= probes[order[i+1]]]
+     * </pre>
+     * @ensures hits = #hits union {i: integer where probes[i] is in
+     *          labels(t)}
+     */
+    private static <T extends Comparable<T>> void findSorted(Node<T> t,
+            T[] probes, int[] order, BitSet hits) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] bounds = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+        int top = 0;
+        T previous = null;
+        boolean found = false;
+        for (int i : order) {
+            T x = probes[i];
+            if (previous == null || x.compareTo(previous) != 0) {
+                /*
+                 * Drop the bounds the probe has passed; the lowest remaining
+                 * one either is x, or has x in its left subtree.
+                 */
+                int c = 1;
+                boolean passed = top > 0;
+                while (passed) {
+                    c = x.compareTo(bounds[top - 1].label);
+                    passed = c > 0;
+                    if (passed) {
+                        top--;
+                        passed = top > 0;
+                    }
+                }
+                found = top > 0 && c == 0;
+                Node<T> n = t;
+                if (top > 0) {
+                    n = bounds[top - 1].left;
+                }
+                while (!found && n != null) {
+                    c = x.compareTo(n.label);
+                    if (c < 0) {
+                        bounds[top] = n;
+                        top++;
+                        n = n.left;
+                    } else if (c > 0) {
+                        n = n.right;
+                    } else {
+                        found = true;
+                    }
+                }
+                previous = x;
+            }
+            if (found) {
+                hits.set(i);
+            }
+        }
+    }
+
+    /**
+     * In-order iterator over the labels of a tree that lie in a range. The
+     * iterator is fail-fast: it throws {@code ConcurrentModificationException}
+     * if {@code this} is changed during iteration.
+     */
+    private final class Set3aIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited; the
+         * tree is height-balanced, so the stack never holds more than
+         * MAX_HEIGHT nodes.
+         */
+        @SuppressWarnings("unchecked")
+        private final Node<T>[] stack = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+
+        /**
+         * Number of nodes on the stack.
+         */
+        private int top;
+
+        /**
+         * Exclusive upper bound of the range, or null if unbounded.
+         */
+        private final T to;
+
+        /**
+         * Value of modCount expected by this iterator.
+         */
+        private final int expectedModCount;
+
+        /**
+         * Constructor of an iterator over the labels in [from, to).
+         *
+         * @param from
+         *            inclusive lower bound, or null if unbounded
+         * @param to
+         *            exclusive upper bound, or null if unbounded
+         */
+        Set3aIterator(T from, T to) {
+            this.to = to;
+            this.expectedModCount = Set3a.this.modCount;
+            /*
+             * Push the path to the first label in range, keeping only the
+             * nodes whose labels are still to be visited.
+             */
+            Node<T> n = Set3a.this.root;
+            while (n != null) {
+                if (from == null || from.compareTo(n.label) <= 0) {
+                    this.stack[this.top] = n;
+                    this.top++;
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+
+        /**
+         * Pushes {@code t} and all its left descendants on the stack.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(Node<T> t) {
+            Node<T> n = t;
+            while (n != null) {
+                this.stack[this.top] = n;
+                this.top++;
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.top > 0 && (this.to == null
+                    || this.stack[this.top - 1].label.compareTo(this.to) < 0);
+        }
+
+        @Override
+        public T next() {
+            if (Set3a.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it never happens here
+                 */
+                throw new NoSuchElementException();
+            }
+            this.top--;
+            Node<T> n = this.stack[this.top];
+            this.stack[this.top] = null;
+            this.pushLeftSpine(n.right);
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+    /**
+     * Spliterator over the labels of a tree, in order. The remaining labels
+     * are described by a stack of (node, subtree) pairs, each standing for
+     * the label of the node followed by the labels of the subtree, so that
+     * the stack can be split at subtree boundaries into a prefix and a
+     * suffix of roughly equal, exactly known sizes.
+     */
+    private final class Set3aSpliterator implements Spliterator<T> {
+
+        /**
+         * Nodes whose labels are still to be visited, bottom of the stack
+         * first.
+         */
+        @SuppressWarnings("unchecked")
+        private final Node<T>[] labels = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+
+        /**
+         * Subtrees to be visited right after the label at the same position.
+         */
+        @SuppressWarnings("unchecked")
+        private final Node<T>[] subtrees = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+
+        /**
+         * Number of pairs on the stack.
+         */
+        private int top;
+
+        /**
+         * Number of labels still to be visited.
+         */
+        private long remaining;
+
+        /**
+         * Value of modCount expected by this spliterator.
+         */
+        private final int expectedModCount;
+
+        /**
+         * Constructor of an empty spliterator.
+         *
+         * @param expectedModCount
+         *            the value of modCount expected
+         */
+        Set3aSpliterator(int expectedModCount) {
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Pushes the pairs visiting the labels of {@code t}.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(Node<T> t) {
+            Node<T> n = t;
+            while (n != null) {
+                this.labels[this.top] = n;
+                this.subtrees[this.top] = n.right;
+                this.top++;
+                n = n.left;
+            }
+        }
+
+        /**
+         * Pushes the pair ({@code n}, {@code t}).
+         *
+         * @param n
+         *            the node whose label is visited first
+         * @param t
+         *            the subtree visited next
+         */
+        private void push(Node<T> n, Node<T> t) {
+            this.labels[this.top] = n;
+            this.subtrees[this.top] = t;
+            this.top++;
+            this.remaining += 1 + size(t);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Set3aSpliterator prefix = null;
+            if (this.top > 1) {
+                /*
+                 * The bottom pair stays here; the pairs above it, which come
+                 * first in order, go to the prefix.
+                 */
+                prefix = new Set3aSpliterator(this.expectedModCount);
+                for (int i = 1; i < this.top; i++) {
+                    prefix.push(this.labels[i], this.subtrees[i]);
+                    this.labels[i] = null;
+                    this.subtrees[i] = null;
+                }
+                this.top = 1;
+                this.remaining -= prefix.remaining;
+            } else if (this.top == 1 && this.subtrees[0] != null) {
+                /*
+                 * A single pair (n, r) is split into (n, r.left), which goes to
+                 * the prefix, and (r, r.right).
+                 */
+                Node<T> n = this.labels[0];
+                Node<T> r = this.subtrees[0];
+                prefix = new Set3aSpliterator(this.expectedModCount);
+                prefix.push(n, r.left);
+                this.labels[0] = r;
+                this.subtrees[0] = r.right;
+                this.remaining -= prefix.remaining;
+            }
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            assert action != null : "Violation of: action is not null";
+
+            boolean advanced = this.top > 0;
+            if (advanced) {
+                this.top--;
+                Node<T> n = this.labels[this.top];
+                Node<T> t = this.subtrees[this.top];
+                this.labels[this.top] = null;
+                this.subtrees[this.top] = null;
+                this.pushLeftSpine(t);
+                this.remaining--;
+                action.accept(n.label);
+                if (Set3a.this.modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+            return advanced;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.SORTED | Spliterator.DISTINCT
+                    | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            /*
+             * Labels are ordered by their natural ordering.
+             */
+            return null;
+        }
+
+    }
+
+    /**
+     * Lazy view of the elements of {@code this} in a range.
+     */
+    private final class RangeView implements Iterable<T> {
+
+        /**
+         * Inclusive lower bound, or null if unbounded.
+         */
+        private final T from;
+
+        /**
+         * Exclusive upper bound, or null if unbounded.
+         */
+        private final T to;
+
+        /**
+         * Constructor of a view of the elements in [from, to).
+         *
+         * @param from
+         *            inclusive lower bound, or null if unbounded
+         * @param to
+         *            exclusive upper bound, or null if unbounded
+         */
+        RangeView(T from, T to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Set3aIterator(this.from, this.to);
+        }
+
+    }
+
+    /**
+     * Identifies the binary format written by {@code writeTo}.
+     */
+    private static final int MAGIC = 0x53334131;
+
+    /**
+     * Version of the binary format.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the buffers used by {@code writeTo} and {@code readFrom}.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Largest encoded size of an element in the binary format, so that a
+     * corrupted length is rejected before a buffer is allocated for it.
+     */
+    private static final int MAX_ELEMENT_LENGTH = 1 << 24;
+
+    /**
+     * Buffered writer of bytes to a channel, keeping a CRC-32 of everything
+     * written.
+     */
+    private static final class ChannelSink {
+
+        /**
+         * The destination.
+         */
+        private final WritableByteChannel out;
+
+        /**
+         * Checksum of the bytes flushed so far.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Bytes not yet flushed.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Constructor.
+         *
+         * @param out
+         *            the destination
+         */
+        ChannelSink(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        /**
+         * Returns the buffer, with at least {@code n} bytes remaining.
+         *
+         * @param n
+         *            the number of bytes about to be written
+         * @return the buffer
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        ByteBuffer reserve(int n) throws IOException {
+            if (this.buffer.remaining() < n) {
+                this.flush();
+                if (this.buffer.capacity() < n) {
+                    this.buffer = ByteBuffer.allocate(n);
+                }
+            }
+            return this.buffer;
+        }
+
+        /**
+         * Writes out the buffered bytes.
+         *
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void flush() throws IOException {
+            this.buffer.flip();
+            this.crc.update(this.buffer.duplicate());
+            while (this.buffer.hasRemaining()) {
+                this.out.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        /**
+         * Writes the checksum of everything written so far, and flushes.
+         *
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void finish() throws IOException {
+            this.flush();
+            this.reserve(Integer.BYTES).putInt((int) this.crc.getValue());
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.out.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+    }
+
+    /**
+     * Buffered reader of bytes from a channel, keeping a CRC-32 of everything
+     * consumed.
+     */
+    private static final class ChannelSource {
+
+        /**
+         * The source.
+         */
+        private final ReadableByteChannel in;
+
+        /**
+         * Checksum of the bytes consumed before {@code mark}.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Bytes read but not yet consumed are in [position, limit).
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Position in the buffer up to which the checksum is up to date.
+         */
+        private int mark;
+
+        /**
+         * Constructor.
+         *
+         * @param in
+         *            the source
+         */
+        ChannelSource(ReadableByteChannel in) {
+            this.in = in;
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Returns the buffer, with at least {@code n} unconsumed bytes
+         * remaining.
+         *
+         * @param n
+         *            the number of bytes about to be consumed
+         * @return the buffer
+         * @throws IOException
+         *             if the channel cannot be read or ends too early
+         */
+        ByteBuffer require(int n) throws IOException {
+            if (this.buffer.remaining() < n) {
+                this.updateChecksum();
+                if (this.buffer.capacity() < n) {
+                    ByteBuffer larger = ByteBuffer.allocate(n);
+                    larger.put(this.buffer);
+                    this.buffer = larger;
+                } else {
+                    this.buffer.compact();
+                }
+                while (this.buffer.position() < n) {
+                    if (this.in.read(this.buffer) < 0) {
+                        throw new EOFException("Truncated set");
+                    }
+                }
+                this.buffer.flip();
+                this.mark = 0;
+            }
+            return this.buffer;
+        }
+
+        /**
+         * Adds the bytes consumed since {@code mark} to the checksum.
+         */
+        private void updateChecksum() {
+            ByteBuffer consumed = this.buffer.duplicate();
+            consumed.limit(consumed.position());
+            consumed.position(this.mark);
+            this.crc.update(consumed);
+            this.mark = this.buffer.position();
+        }
+
+        /**
+         * Checks the checksum of everything consumed so far against the one
+         * that follows it, then moves a seekable channel back to just past
+         * that checksum, giving back the bytes read ahead.
+         *
+         * @throws IOException
+         *             if the channel cannot be read or the checksums differ
+         */
+        void finish() throws IOException {
+            this.updateChecksum();
+            int expected = (int) this.crc.getValue();
+            if (this.require(Integer.BYTES).getInt() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            if (this.in instanceof SeekableByteChannel) {
+                SeekableByteChannel seekable = (SeekableByteChannel) this.in;
+                seekable.position(
+                        seekable.position() - this.buffer.remaining());
+            }
+        }
+
+    }
+
+    /**
+     * Records in the metrics the operation {@code operation}, started at
+     * {@code start}, with the work counted in {@code this.counts}, and
+     * resets those counts.
+     *
+     * @param operation
+     *            the operation number
+     * @param start
+     *            the value of System.nanoTime() when it started
+     * @requires this.metrics /= null and this.counts /= null
+     */
+    private void record(int operation, long start) {
+        long nanos = System.nanoTime() - start;
+        OperationCounts c = this.counts;
+        this.metrics.record(operation, nanos, c.depth, c.comparisons,
+                c.visited, c.allocations);
+        c.reset();
+    }
+
+    /**
+     * {@code contains} with metrics, counted during its single search.
+     *
+     * @param x
+     *            the element to be checked
+     * @return true iff element is in this
+     * @requires this.metrics /= null
+     * @ensures measuredContains = (x is in this)
+     */
+    private boolean measuredContains(T x) {
+        long start = System.nanoTime();
+        boolean result = findInTree(this.root, x, this.counts) != null;
+        this.record(Set3aMetrics.CONTAINS, start);
+        return result;
+    }
+
+    /**
+     * {@code add} with metrics, counted during its single descent, leaving
+     * the new root in {@code this.root}.
+     *
+     * @param x
+     *            the element to be added
+     * @requires this.metrics /= null
+     * @ensures labels(this.root) = labels(#this.root) union {x}
+     */
+    private void measuredAdd(T x) {
+        long start = System.nanoTime();
+        this.root = insertInTree(this.root, x, this.path, this.counts);
+        this.record(Set3aMetrics.ADD, start);
+    }
+
+    /**
+     * {@code remove} with metrics, counted during its single descent,
+     * leaving the new root in {@code this.path[0]}.
+     *
+     * @param x
+     *            the element to be removed
+     * @return the element removed, or null
+     * @requires this.metrics /= null
+     * @ensures labels(this.path[0]) = labels(this.root) \ {x} and
+     *          measuredRemove = [x if x is in this.root, or else null]
+     */
+    private T measuredRemove(T x) {
+        long start = System.nanoTime();
+        T result = removeFromTree(this.root, x, this.path, this.counts);
+        this.record(Set3aMetrics.REMOVE, start);
+        return result;
+    }
+
+    /**
+     * {@code removeAny} with metrics, counted during its single descent,
+     * leaving the new root in {@code this.path[0]}.
+     *
+     * @return the element removed
+     * @requires this.metrics /= null and this.root /= null
+     * @ensures measuredRemoveAny is in labels(this.root) and
+     *          labels(this.path[0]) = labels(this.root) \ {measuredRemoveAny}
+     */
+    private T measuredRemoveAny() {
+        long start = System.nanoTime();
+        T result = removeSmallest(this.root, this.path, this.counts);
+        this.record(Set3aMetrics.REMOVE_ANY, start);
+        return result;
+    }
+
+    /**
+     * Asks the filter whether {@code x} may be in {@code this}, first
+     * rebuilding the filter if it is out of step or due for a rebuild.
+     *
+     * @param x
+     *            the element to be checked
+     * @return false if x is certainly not in this
+     * @requires this.filter /= null
+     * @ensures filterAdmits = [x may be in this]
+     */
+    private boolean filterAdmits(T x) {
+        int n = size(this.root);
+        if (this.filterModCount != this.modCount
+                || this.filter.needsRebuild(n)) {
+            this.filter.rebuild(this.iterator(), n);
+            this.filterModCount = this.modCount;
+        }
+        return this.filter.mightContain(x);
+    }
+
+    /**
+     * Keeps the hash and the filter in step after the kernel method that
+     * just added {@code x}, for each that was in step before.
+     *
+     * @param x
+     *            the element added
+     */
+    private void added(T x) {
+        if (this.hashModCount == this.modCount - 1) {
+            this.hash += x.hashCode();
+            this.hashModCount = this.modCount;
+        }
+        if (this.filter != null && this.filterModCount == this.modCount - 1) {
+            this.filter.add(x);
+            this.filterModCount = this.modCount;
+        }
+    }
+
+    /**
+     * Keeps the hash and the filter in step after the kernel method that
+     * just removed {@code x}, for each that was in step before.
+     *
+     * @param x
+     *            the element removed
+     */
+    private void removed(T x) {
+        if (this.hashModCount == this.modCount - 1) {
+            this.hash -= x.hashCode();
+            this.hashModCount = this.modCount;
+        }
+        if (this.filter != null && this.filterModCount == this.modCount - 1) {
+            this.filter.removed();
+            this.filterModCount = this.modCount;
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.modCount++;
+        this.hash = 0;
+        this.hashModCount = this.modCount;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3a() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Bulk construction ------------------------------------------------------
+     */
+
+    /**
+     * Returns a new set with the next {@code n} elements of {@code elements},
+     * built directly as a perfectly balanced tree in O(n) time with exactly
+     * {@code n} node allocations.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the source of elements, in increasing order
+     * @param n
+     *            the number of elements to take
+     * @return the new set
+     * @updates elements
+     * @requires n >= 0 and [elements has at least n more elements, none null
+     *           and in strictly increasing order]
+     * @ensures <pre>
+     * fromSorted = [the first n elements of #elements]  and
+     *  elements = [#elements without its first n elements]
+     * </pre>
+     */
+    public static <T extends Comparable<T>> Set3a<T> fromSorted(
+            Iterator<? extends T> elements, int n) {
+        assert elements != null : "Violation of: elements is not null";
+        assert n >= 0 : "Violation of: n >= 0";
+
+        Set3a<T> result = new Set3a<T>();
+        result.root = buildTree(elements, n);
+        result.modCount++;
+
+        assert isStrictlyIncreasing(result) : ""
+                + "Violation of: elements are in strictly increasing order";
+        return result;
+    }
+
+    /**
+     * Returns a new set with the elements of {@code elements}, built directly
+     * as a perfectly balanced tree in O(n) time with exactly
+     * {@code elements.length} node allocations.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the elements, in increasing order
+     * @return the new set
+     * @requires [elements has no null entries and is in strictly increasing
+     *           order]
+     * @ensures fromSorted = [entries of elements]
+     */
+    @SafeVarargs
+    public static <T extends Comparable<T>> Set3a<T> fromSorted(
+            T... elements) {
+        assert elements != null : "Violation of: elements is not null";
+
+        /*
+         * The array is only read, entry by entry, and never passed on, which
+         * is what makes the varargs safe.
+         */
+        Iterator<T> entries = new Iterator<T>() {
+
+            /**
+             * Index of the next entry.
+             */
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < elements.length;
+            }
+
+            @Override
+            public T next() {
+                T result = elements[this.next];
+                this.next++;
+                return result;
+            }
+
+        };
+        return fromSorted(entries, elements.length);
+    }
+
+    /**
+     * Returns a new set with the elements of {@code elements}, built directly
+     * as a perfectly balanced tree in O(n) time. When the stream does not know
+     * its size in advance, its elements are first gathered into a list.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the elements, in increasing order
+     * @return the new set
+     * @requires [elements has no null entries and is in strictly increasing
+     *           order]
+     * @ensures fromSorted = [entries of elements]
+     */
+    public static <T extends Comparable<T>> Set3a<T> fromSorted(
+            Stream<? extends T> elements) {
+        assert elements != null : "Violation of: elements is not null";
+
+        Set3a<T> result;
+        Spliterator<? extends T> split = elements.spliterator();
+        long n = split.getExactSizeIfKnown();
+        if (n >= 0) {
+            assert n <= Integer.MAX_VALUE : "Violation of: |elements| <= "
+                    + "Integer.MAX_VALUE";
+            result = fromSorted(Spliterators.iterator(split), (int) n);
+        } else {
+            List<T> list = new ArrayList<>();
+            split.forEachRemaining(list::add);
+            result = fromSorted(list.iterator(), list.size());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set with the elements of {@code elements}, built directly
+     * as a perfectly balanced tree by fork-join tasks in {@code pool}. Ranges
+     * of at most {@code sequentialCutoff} elements are built sequentially.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the elements, in increasing order
+     * @param pool
+     *            the pool running the tasks
+     * @param sequentialCutoff
+     *            the size below which no further tasks are forked
+     * @return the new set
+     * @requires <pre>
+     * [elements has no null entries and is in strictly increasing order]  and
+     *  sequentialCutoff > 0
+     * </pre>
+     * @ensures fromSortedParallel = [entries of elements]
+     */
+    public static <T extends Comparable<T>> Set3a<T> fromSortedParallel(
+            T[] elements, ForkJoinPool pool, int sequentialCutoff) {
+        assert elements != null : "Violation of: elements is not null";
+        assert pool != null : "Violation of: pool is not null";
+        assert sequentialCutoff > 0 : "Violation of: sequentialCutoff > 0";
+
+        Set3a<T> result = new Set3a<T>();
+        result.root = pool.invoke(new BuildTask<T>(elements, 0,
+                elements.length, sequentialCutoff));
+        result.modCount++;
+
+        assert isStrictlyIncreasing(result) : ""
+                + "Violation of: elements are in strictly increasing order";
+        return result;
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
     public final void transferFrom(Set<T> source) {
         assert source != null : "Violation of: source is not null";
         assert source != this : "Violation of: source is not this";
@@ -330,54 +2593,1137 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
          * the ? must be T or the call would not have compiled.
          */
         Set3a<T> localSource = (Set3a<T>) source;
-        this.tree = localSource.tree;
+        this.root = localSource.root;
+        this.modCount++;
+        if (localSource.hashModCount == localSource.modCount) {
+            this.hash = localSource.hash;
+            this.hashModCount = this.modCount;
+        }
         localSource.createNewRep();
     }
 
     /*
-     * Kernel methods ---------------------------------------------------------
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert findInTree(this.root, x) == null : ""
+                + "Violation of: x is not in this";
+
+        if (this.metrics == null) {
+            this.root = insertInTree(this.root, x, this.path, null);
+        } else {
+            this.measuredAdd(x);
+        }
+        this.modCount++;
+        this.added(x);
+
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert findInTree(this.root, x) != null : ""
+                + "Violation of: x is in this";
+
+        T label;
+        if (this.metrics == null) {
+            label = removeFromTree(this.root, x, this.path, null);
+        } else {
+            label = this.measuredRemove(x);
+        }
+        this.root = this.path[0];
+        this.modCount++;
+        this.removed(label);
+        this.path[0] = null;
+        return label;
+    }
+
+    /**
+     * Removes and returns an arbitrary element from {@code this}: the
+     * smallest one, unlinked from the end of the left spine. Takes O(log n)
+     * time, since every ancestor of the unlinked node changes size and may
+     * need rebalancing; to empty {@code this}, {@link #drainTo(Consumer)}
+     * takes O(n) time in all.
+     *
+     * @return the element removed from this
+     * @updates this
+     * @requires |this| > 0
+     * @ensures removeAny is in #this and this = #this \ {removeAny}
+     */
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        T label;
+        if (this.metrics == null) {
+            label = removeSmallest(this.root, this.path, null);
+        } else {
+            label = this.measuredRemoveAny();
+        }
+        this.root = this.path[0];
+        this.modCount++;
+        this.removed(label);
+        this.path[0] = null;
+        return label;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean result = false;
+        if (this.filter == null || this.filterAdmits(x)) {
+            if (this.metrics == null) {
+                result = findInTree(this.root, x) != null;
+            } else {
+                result = this.measuredContains(x);
+            }
+            if (this.filter != null && !result) {
+                this.filter.falsePositive();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final int size() {
+
+        return size(this.root);
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3aIterator(null, null);
+    }
+
+    /*
+     * Common methods (from Object) -------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Against another {@code Set3a}, compares sizes and, when both are known,
+     * hash codes in O(1) time, and otherwise walks the two trees in order
+     * side by side in O(|this|) time; neither set is changed.
+     * </p>
+     */
+    @Override
+    public final boolean equals(Object obj) {
+        boolean result = obj == this;
+        if (!result && obj instanceof Set3a<?>) {
+            Set3a<?> other = (Set3a<?>) obj;
+            result = size(this.root) == size(other.root);
+            if (result && this.hashModCount == this.modCount
+                    && other.hashModCount == other.modCount) {
+                result = this.hash == other.hash;
+            }
+            Iterator<?> it = this.iterator();
+            Iterator<?> itOther = other.iterator();
+            while (result && it.hasNext()) {
+                result = it.next().equals(itOther.next());
+            }
+        } else if (!result) {
+            result = super.equals(obj);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The hash code is the sum of the hash codes of the elements. It is
+     * computed once in O(|this|) time and then kept up to date by the kernel
+     * methods in O(1) time each; other changes, such as bulk operations,
+     * have it recomputed by the next call.
+     * </p>
+     */
+    @Override
+    public final int hashCode() {
+        if (this.hashModCount != this.modCount) {
+            int result = 0;
+            for (T x : this) {
+                result += x.hashCode();
+            }
+            this.hash = result;
+            this.hashModCount = this.modCount;
+        }
+        return this.hash;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder("{");
+        Iterator<T> it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.next());
+            if (it.hasNext()) {
+                result.append(",");
+            }
+        }
+        result.append("}");
+        return result.toString();
+    }
+
+    /*
+     * Stream methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final Spliterator<T> spliterator() {
+        Set3aSpliterator result = new Set3aSpliterator(this.modCount);
+        if (this.root != null) {
+            /*
+             * The whole tree is the root label followed by the right subtree,
+             * preceded by the left subtree.
+             */
+            result.push(this.root, this.root.right);
+            Node<T> n = this.root.left;
+            while (n != null) {
+                result.push(n, n.right);
+                n = n.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a sequential stream of the elements of {@code this}, in
+     * increasing order.
+     *
+     * @return the stream
+     * @ensures [stream delivers the elements of this in increasing order]
+     */
+    public final Stream<T> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the elements of {@code this}, which is
+     * split at subtree boundaries.
+     *
+     * @return the stream
+     * @ensures [parallelStream delivers the elements of this, with encounter
+     *          order the increasing order]
+     */
+    public final Stream<T> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /*
+     * Other methods (overridden for performance reasons) ---------------------
+     */
+
+    @Override
+    public final void add(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        if (s instanceof Set3a<?>) {
+            /*
+             * Union by split and join, which reuses the nodes of both trees.
+             * The labels found in both trees then become s.
+             */
+            Set3a<T> localS = (Set3a<T>) s;
+            List<T> common = new ArrayList<>();
+            this.root = union(this.root, localS.root, common, new Split<T>());
+            this.modCount++;
+            localS.root = buildTree(common.iterator(), common.size());
+            localS.modCount++;
+        } else {
+            super.add(s);
+        }
+    }
+
+    @Override
+    public final Set<T> remove(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        Set<T> result;
+        if (s instanceof Set3a<?>) {
+            /*
+             * Difference by split and join; s is only read. The labels removed
+             * from this come out in order and are built into the result.
+             */
+            Set3a<T> localS = (Set3a<T>) s;
+            List<T> common = new ArrayList<>();
+            this.root = difference(this.root, localS.root, common,
+                    new Split<T>());
+            this.modCount++;
+            Set3a<T> localResult = (Set3a<T>) this.newInstance();
+            localResult.root = buildTree(common.iterator(), common.size());
+            localResult.modCount++;
+            result = localResult;
+        } else {
+            result = super.remove(s);
+        }
+        return result;
+    }
+
+    /**
+     * Removes from {@code this} all elements that are not in {@code s}.
+     *
+     * @param s
+     *            the set whose elements are to be kept in {@code this}
+     * @updates this
+     * @requires s is not this
+     * @ensures this = #this intersection s
+     */
+    public final void intersect(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        this.root = intersection(this.root, asSet3a(s).root,
+                new ArrayList<T>(), new Split<T>());
+        this.modCount++;
+    }
+
+    /**
+     * Removes from {@code this} the elements also in {@code s}, and adds to
+     * {@code this} the elements of {@code s} that were not in {@code this}.
+     *
+     * @param s
+     *            the set to be combined with {@code this}
+     * @updates this
+     * @requires s is not this
+     * @ensures this = (#this \ s) union (s \ #this)
+     */
+    public final void symmetricDifference(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        this.root = symmetricDifference(this.root, asSet3a(s).root,
+                new ArrayList<T>(), new Split<T>());
+        this.modCount++;
+    }
+
+    /**
+     * Parallel version of {@link #add(Set)} for a {@code Set3a} argument, run
+     * by fork-join tasks in {@code pool}. Subproblems on trees of at most
+     * {@code sequentialCutoff} elements are solved sequentially.
+     *
+     * @param s
+     *            the set to be added to {@code this}
+     * @param pool
+     *            the pool running the tasks
+     * @param sequentialCutoff
+     *            the size below which no further tasks are forked
+     * @updates this, s
+     * @requires s is not this and sequentialCutoff > 0
+     * @ensures this = #this union #s and s = #this intersection #s
+     */
+    public final void addParallel(Set3a<T> s, ForkJoinPool pool,
+            int sequentialCutoff) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+        assert pool != null : "Violation of: pool is not null";
+        assert sequentialCutoff > 0 : "Violation of: sequentialCutoff > 0";
+
+        BulkTask<T> task = new BulkTask<T>(BulkTask.UNION, this.root, s.root,
+                sequentialCutoff);
+        pool.invoke(task);
+        this.root = task.root;
+        this.modCount++;
+        s.root = task.common;
+        s.modCount++;
+    }
+
+    /**
+     * Parallel version of {@link #remove(Set)} for a {@code Set3a} argument,
+     * run by fork-join tasks in {@code pool}. Subproblems on trees of at most
+     * {@code sequentialCutoff} elements are solved sequentially.
+     *
+     * @param s
+     *            the set whose elements are to be removed from {@code this}
+     * @param pool
+     *            the pool running the tasks
+     * @param sequentialCutoff
+     *            the size below which no further tasks are forked
+     * @return the set of elements removed from {@code this}
+     * @updates this
+     * @requires s is not this and sequentialCutoff > 0
+     * @ensures this = #this \ s and removeParallel = #this intersection s
+     */
+    public final Set<T> removeParallel(Set3a<T> s, ForkJoinPool pool,
+            int sequentialCutoff) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+        assert pool != null : "Violation of: pool is not null";
+        assert sequentialCutoff > 0 : "Violation of: sequentialCutoff > 0";
+
+        BulkTask<T> task = new BulkTask<T>(BulkTask.DIFFERENCE, this.root,
+                s.root, sequentialCutoff);
+        pool.invoke(task);
+        this.root = task.root;
+        this.modCount++;
+        Set3a<T> result = (Set3a<T>) this.newInstance();
+        result.root = task.common;
+        result.modCount++;
+        return result;
+    }
+
+    /**
+     * Parallel version of {@link #intersect(Set)} for a {@code Set3a}
+     * argument, run by fork-join tasks in {@code pool}. Subproblems on trees
+     * of at most {@code sequentialCutoff} elements are solved sequentially.
+     *
+     * @param s
+     *            the set whose elements are to be kept in {@code this}
+     * @param pool
+     *            the pool running the tasks
+     * @param sequentialCutoff
+     *            the size below which no further tasks are forked
+     * @updates this
+     * @requires s is not this and sequentialCutoff > 0
+     * @ensures this = #this intersection s
+     */
+    public final void intersectParallel(Set3a<T> s, ForkJoinPool pool,
+            int sequentialCutoff) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+        assert pool != null : "Violation of: pool is not null";
+        assert sequentialCutoff > 0 : "Violation of: sequentialCutoff > 0";
+
+        BulkTask<T> task = new BulkTask<T>(BulkTask.INTERSECTION, this.root,
+                s.root, sequentialCutoff);
+        pool.invoke(task);
+        this.root = task.root;
+        this.modCount++;
+    }
+
+    /*
+     * Single-pass update methods ---------------------------------------------
      */
 
-    @Override
-    public final void add(T x) {
+    /**
+     * Adds {@code x} to {@code this} if it is not already there. Unlike
+     * {@code add}, this has no precondition on membership, and it makes one
+     * root-to-leaf walk whether or not assertions are enabled.
+     *
+     * @param x
+     *            the element to be added
+     * @return true iff x was added
+     * @aliases reference {@code x} if it is added
+     * @updates this
+     * @ensures this = #this union {x} and addIfAbsent = (x is not in #this)
+     */
+    public final boolean addIfAbsent(T x) {
         assert x != null : "Violation of: x is not null";
-        assert !this.contains(x) : "Violation of: x is not in this";
 
-        insertInTree(this.tree, x);
+        int n = size(this.root);
+        if (this.metrics == null) {
+            this.root = insertInTree(this.root, x, this.path, null);
+        } else {
+            this.measuredAdd(x);
+        }
+        boolean result = size(this.root) != n;
+        if (result) {
+            this.modCount++;
+            this.added(x);
+        }
+        return result;
+    }
+
+    /**
+     * Removes {@code x} from {@code this} if it is there, and returns the
+     * element removed, or null if there was none. Unlike {@code remove},
+     * this has no precondition on membership, and it makes one root-to-leaf
+     * walk whether or not assertions are enabled.
+     *
+     * @param x
+     *            the element to be removed
+     * @return the element removed, or null
+     * @updates this
+     * @ensures <pre>
+     * this = #this \ {x}  and
+     *  removeIfPresent = [the element of #this equal to x, or null if x is
+     *  not in #this]
+     * </pre>
+     */
+    public final T removeIfPresent(T x) {
+        assert x != null : "Violation of: x is not null";
 
+        T label;
+        if (this.metrics == null) {
+            label = removeFromTree(this.root, x, this.path, null);
+        } else {
+            label = this.measuredRemove(x);
+        }
+        this.root = this.path[0];
+        this.path[0] = null;
+        if (label != null) {
+            this.modCount++;
+            this.removed(label);
+        }
+        return label;
     }
 
-    @Override
-    public final T remove(T x) {
+    /**
+     * Replaces the element of {@code this} equal to {@code x}, if there is
+     * one, by {@code x} itself, and returns the element replaced, or null if
+     * there was none (in which case {@code this} is unchanged). The tree is
+     * not restructured, so iterators in progress are unaffected.
+     *
+     * @param x
+     *            the replacement
+     * @return the element replaced, or null
+     * @aliases reference {@code x} if an element is replaced
+     * @updates this
+     * @ensures <pre>
+     * this = #this  and
+     *  replace = [the element of #this equal to x, or null if x is not in
+     *  #this]
+     * </pre>
+     */
+    public final T replace(T x) {
         assert x != null : "Violation of: x is not null";
-        assert this.contains(x) : "Violation of: x is in this";
 
-        return removeFromTree(this.tree, x);
+        T result = null;
+        Node<T> n = findInTree(this.root, x);
+        if (n != null) {
+            result = n.label;
+            n.label = x;
+            if (this.hashModCount == this.modCount) {
+                this.hash += x.hashCode() - result.hashCode();
+            }
+        }
+        return result;
     }
 
-    @Override
-    public final T removeAny() {
+    /*
+     * Order-statistic methods ------------------------------------------------
+     */
+
+    /**
+     * Reports the number of elements of {@code this} smaller than {@code x}.
+     *
+     * @param x
+     *            the element to be ranked
+     * @return the number of elements of this smaller than x
+     * @ensures rank = |{y: T where (y is in this and y < x)}|
+     */
+    public final int rank(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int result = 0;
+        Node<T> n = this.root;
+        while (n != null) {
+            int c = x.compareTo(n.label);
+            if (c < 0) {
+                n = n.left;
+            } else if (c > 0) {
+                result += size(n.left) + 1;
+                n = n.right;
+            } else {
+                result += size(n.left);
+                n = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the element of {@code this} with exactly {@code k} smaller
+     * elements in {@code this}.
+     *
+     * @param k
+     *            the rank of the element
+     * @return the element of rank k
+     * @requires 0 <= k < |this|
+     * @ensures select is in this and rank(select) = k
+     */
+    public final T select(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < this.size() : "Violation of: k < |this|";
+
+        Node<T> n = this.root;
+        int i = k;
+        int leftSize = size(n.left);
+        while (i != leftSize) {
+            if (i < leftSize) {
+                n = n.left;
+            } else {
+                i -= leftSize + 1;
+                n = n.right;
+            }
+            leftSize = size(n.left);
+        }
+        return n.label;
+    }
+
+    /*
+     * Navigation methods -----------------------------------------------------
+     */
+
+    /**
+     * Returns the smallest element of {@code this}.
+     *
+     * @return the smallest element
+     * @requires |this| > 0
+     * @ensures min is in this and [min <= every element of this]
+     */
+    public final T min() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        return removeSmallest(this.tree);
+        Node<T> n = this.root;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.label;
     }
 
-    @Override
-    public final boolean contains(T x) {
+    /**
+     * Returns the largest element of {@code this}.
+     *
+     * @return the largest element
+     * @requires |this| > 0
+     * @ensures max is in this and [max >= every element of this]
+     */
+    public final T max() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Node<T> n = this.root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.label;
+    }
+
+    /**
+     * Returns the largest element of {@code this} that is at most {@code x},
+     * or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the largest element <= x, or null
+     * @ensures floor = [the largest y in this with y <= x, or null if none]
+     */
+    public final T floor(T x) {
         assert x != null : "Violation of: x is not null";
 
-        return isInTree(this.tree, x);
+        return closest(this.root, x, true, true);
     }
 
-    @Override
-    public final int size() {
+    /**
+     * Returns the largest element of {@code this} that is less than
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the largest element < x, or null
+     * @ensures lower = [the largest y in this with y < x, or null if none]
+     */
+    public final T lower(T x) {
+        assert x != null : "Violation of: x is not null";
 
-        return this.tree.size();
+        return closest(this.root, x, true, false);
     }
 
-    @Override
-    public final Iterator<T> iterator() {
-        return this.tree.iterator();
+    /**
+     * Returns the smallest element of {@code this} that is at least
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the smallest element >= x, or null
+     * @ensures ceiling = [the smallest y in this with y >= x, or null if none]
+     */
+    public final T ceiling(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return closest(this.root, x, false, true);
+    }
+
+    /**
+     * Returns the smallest element of {@code this} that is greater than
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the smallest element > x, or null
+     * @ensures higher = [the smallest y in this with y > x, or null if none]
+     */
+    public final T higher(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return closest(this.root, x, false, false);
+    }
+
+    /**
+     * Returns a lazy view of the elements of {@code this} from {@code from},
+     * inclusive, to {@code to}, exclusive. Nothing is copied: each iterator
+     * of the view walks the current tree of {@code this}, visiting only
+     * O(log |this| + k) nodes for k elements in range. The number of
+     * elements in range is {@code rank(to) - rank(from)}.
+     *
+     * @param from
+     *            the inclusive lower bound
+     * @param to
+     *            the exclusive upper bound
+     * @return the view
+     * @requires from <= to
+     * @ensures [subSet iterates, in increasing order, over the elements y of
+     *          this with from <= y < to at the time iteration begins]
+     */
+    public final Iterable<T> subSet(T from, T to) {
+        assert from != null : "Violation of: from is not null";
+        assert to != null : "Violation of: to is not null";
+        assert from.compareTo(to) <= 0 : "Violation of: from <= to";
+
+        return new RangeView(from, to);
+    }
+
+    /**
+     * Returns a lazy view of the elements of {@code this} less than
+     * {@code to}; see {@link #subSet(Comparable, Comparable)}.
+     *
+     * @param to
+     *            the exclusive upper bound
+     * @return the view
+     * @ensures [headSet iterates, in increasing order, over the elements y of
+     *          this with y < to at the time iteration begins]
+     */
+    public final Iterable<T> headSet(T to) {
+        assert to != null : "Violation of: to is not null";
+
+        return new RangeView(null, to);
+    }
+
+    /**
+     * Returns a lazy view of the elements of {@code this} at least
+     * {@code from}; see {@link #subSet(Comparable, Comparable)}.
+     *
+     * @param from
+     *            the inclusive lower bound
+     * @return the view
+     * @ensures [tailSet iterates, in increasing order, over the elements y of
+     *          this with from <= y at the time iteration begins]
+     */
+    public final Iterable<T> tailSet(T from) {
+        assert from != null : "Violation of: from is not null";
+
+        return new RangeView(from, null);
+    }
+
+    /*
+     * Batch methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports which elements of {@code batch} are in {@code this}. The batch
+     * is sorted (in O(k) time if already sorted) and looked up in one pass,
+     * each search resuming where the previous one left the tree, so that k
+     * clustered probes cost about O(k log(|this| / k)) comparisons rather
+     * than O(k log |this|).
+     *
+     * @param batch
+     *            the elements to be checked
+     * @return the set of indices i such that batch.get(i) is in this
+     * @requires [batch contains no null]
+     * @ensures containsEach = {i: integer where 0 <= i < |batch| and
+     *          batch.get(i) is in this}
+     */
+    public final BitSet containsEach(List<? extends T> batch) {
+        assert batch != null : "Violation of: batch is not null";
+
+        @SuppressWarnings("unchecked")
+        T[] probes = (T[]) batch.toArray(new Comparable<?>[batch.size()]);
+        int k = probes.length;
+        int[] order = new int[k];
+        for (int i = 0; i < k; i++) {
+            order[i] = i;
+        }
+        sortOrder(probes, order, new int[k], 0, k);
+        BitSet result = new BitSet(k);
+        findSorted(this.root, probes, order, result);
+        return result;
+    }
+
+    /**
+     * Reports whether every element of {@code batch} is in {@code this}; see
+     * {@link #containsEach(List)}.
+     *
+     * @param batch
+     *            the elements to be checked
+     * @return true iff every element of batch is in this
+     * @requires [batch contains no null]
+     * @ensures containsAll = [every element of batch is in this]
+     */
+    public final boolean containsAll(List<? extends T> batch) {
+        assert batch != null : "Violation of: batch is not null";
+
+        return this.containsEach(batch).cardinality() == batch.size();
+    }
+
+    /**
+     * Adds to {@code this} the elements of {@code batch} not already in it,
+     * and reports how many were added. The batch is sorted and deduplicated
+     * and then merged into the tree in one pass: by split and join, which
+     * rebuilds only the parts of the tree the batch falls into, or, when the
+     * batch is large relative to {@code this}, by rebuilding the whole tree
+     * from the merged sequence in O(|this| + |batch|) time.
+     *
+     * @param batch
+     *            the elements to be added
+     * @return the number of elements added
+     * @updates this
+     * @requires [batch contains no null]
+     * @ensures this = #this union [elements of batch] and addAll = |this| -
+     *          |#this|
+     */
+    public final int addAll(Collection<? extends T> batch) {
+        assert batch != null : "Violation of: batch is not null";
+
+        T[] labels = sortedDistinct(batch);
+        int n = size(this.root);
+        int added;
+        if (REBUILD_RATIO * labels.length >= n) {
+            List<T> merged = merge(this.iterator(), n, labels, true);
+            this.root = buildTree(merged.iterator(), merged.size());
+            added = merged.size() - n;
+        } else {
+            List<T> common = new ArrayList<>();
+            this.root = union(this.root,
+                    buildTree(Arrays.asList(labels).iterator(), labels.length),
+                    common, new Split<T>());
+            added = labels.length - common.size();
+        }
+        this.modCount++;
+        return added;
+    }
+
+    /**
+     * Removes from {@code this} the elements of {@code batch} that are in
+     * it, and reports how many were removed; see
+     * {@link #addAll(Collection)}.
+     *
+     * @param batch
+     *            the elements to be removed
+     * @return the number of elements removed
+     * @updates this
+     * @requires [batch contains no null]
+     * @ensures this = #this \ [elements of batch] and removeAll = |#this| -
+     *          |this|
+     */
+    public final int removeAll(Collection<? extends T> batch) {
+        assert batch != null : "Violation of: batch is not null";
+
+        T[] labels = sortedDistinct(batch);
+        int n = size(this.root);
+        int removed;
+        if (REBUILD_RATIO * labels.length >= n) {
+            List<T> merged = merge(this.iterator(), n, labels, false);
+            this.root = buildTree(merged.iterator(), merged.size());
+            removed = n - merged.size();
+        } else {
+            List<T> common = new ArrayList<>();
+            this.root = difference(this.root,
+                    buildTree(Arrays.asList(labels).iterator(), labels.length),
+                    common, new Split<T>());
+            removed = common.size();
+        }
+        this.modCount++;
+        return removed;
+    }
+
+    /**
+     * Empties {@code this}, passing each of its elements to {@code action} in
+     * increasing order. Takes O(|this|) time: the tree is detached, walked
+     * once in order and dropped, with no rebalancing, whereas emptying
+     * {@code this} by repeated {@code removeAny} takes O(|this| log |this|)
+     * time.
+     * {@code this} is already empty when {@code action} is first called; if
+     * {@code action} throws an exception, the elements not yet passed to it
+     * are lost.
+     *
+     * @param action
+     *            the receiver of the elements
+     * @updates this
+     * @ensures this = {} and [action has been called on the elements of
+     *          #this, in increasing order]
+     */
+    public final void drainTo(Consumer<? super T> action) {
+        assert action != null : "Violation of: action is not null";
+
+        Node<T> t = this.root;
+        this.createNewRep();
+        @SuppressWarnings("unchecked")
+        Node<T>[] stack = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+        int top = 0;
+        Node<T> n = t;
+        while (n != null || top > 0) {
+            while (n != null) {
+                stack[top] = n;
+                top++;
+                n = n.left;
+            }
+            top--;
+            n = stack[top];
+            stack[top] = null;
+            action.accept(n.label);
+            n = n.right;
+        }
+    }
+
+    /**
+     * Empties {@code this} and returns its elements in increasing order; see
+     * {@link #drainTo(Consumer)}.
+     *
+     * @return the elements of #this, in increasing order
+     * @updates this
+     * @ensures this = {} and [drainSorted is the elements of #this in
+     *          increasing order]
+     */
+    public final List<T> drainSorted() {
+        List<T> result = new ArrayList<>(size(this.root));
+        this.drainTo(result::add);
+        return result;
+    }
+
+    /*
+     * Conversion methods -----------------------------------------------------
+     */
+
+    /**
+     * Returns an immutable copy of {@code this} laid out for fast lookups;
+     * see {@link FrozenSet3}. Takes O(|this|) time; later changes to
+     * {@code this} do not affect the copy.
+     *
+     * @return the frozen copy
+     * @ensures toFrozen = this
+     */
+    public final FrozenSet3<T> toFrozen() {
+        return new FrozenSet3<T>(this.iterator(), this.size());
+    }
+
+    /*
+     * Metrics methods --------------------------------------------------------
+     */
+
+    /**
+     * Starts collecting metrics of the kernel operations of {@code this}, if
+     * not already started, and returns them. Metrics cover {@code contains},
+     * {@code add}, {@code remove} and {@code removeAny}, whose comparisons,
+     * visited nodes and allocations are counted as they are made, during
+     * the timed operation itself.
+     *
+     * @return the metrics
+     * @ensures [metrics of this are being collected into enableMetrics]
+     */
+    public final Set3aMetrics enableMetrics() {
+        if (this.metrics == null) {
+            this.metrics = new Set3aMetrics();
+            this.counts = new OperationCounts();
+        }
+        return this.metrics;
+    }
+
+    /**
+     * Stops collecting metrics of the kernel operations of {@code this}; the
+     * metrics collected so far keep their values.
+     *
+     * @ensures [metrics of this are not being collected]
+     */
+    public final void disableMetrics() {
+        this.metrics = null;
+        this.counts = null;
+    }
+
+    /*
+     * Filter methods ---------------------------------------------------------
+     */
+
+    /**
+     * Puts a Bloom filter in front of {@code contains}, replacing any
+     * previous one, and returns it. Most lookups of elements not in
+     * {@code this} are then answered from one cache line of the filter
+     * instead of a walk down the tree; each costs a hash of the element, so
+     * the filter pays off when most lookups miss. The filter is kept up to
+     * date by {@code add}, {@code remove} and {@code removeAny}, and rebuilt
+     * in O(|this|) time before its next use after any other change, or when
+     * removals have made it mostly stale. Elements must have a
+     * {@code hashCode} consistent with {@code compareTo}.
+     *
+     * @param bitsPerElement
+     *            the number of bits of filter per element; 10 gives about 1%
+     *            false positives
+     * @return the filter, whose counters report its effectiveness
+     * @requires bitsPerElement > 0
+     * @ensures [contains is filtered by enableBloomFilter]
+     */
+    public final Set3aBloomFilter enableBloomFilter(int bitsPerElement) {
+        assert bitsPerElement > 0 : "Violation of: bitsPerElement > 0";
+
+        this.filter = new Set3aBloomFilter(bitsPerElement);
+        this.filter.rebuild(this.iterator(), size(this.root));
+        this.filterModCount = this.modCount;
+        return this.filter;
+    }
+
+    /**
+     * Removes the Bloom filter in front of {@code contains}, if any.
+     *
+     * @ensures [contains is not filtered]
+     */
+    public final void disableBloomFilter() {
+        this.filter = null;
+    }
+
+    /*
+     * Serialization methods --------------------------------------------------
+     */
+
+    /**
+     * Writes {@code this} to {@code out} in a compact binary format: a header
+     * (magic number, format version, codec width, and number of elements, as
+     * four big-endian {@code int}s), then the elements in increasing order,
+     * each encoded by {@code codec} and preceded by its length as an
+     * {@code int} if the codec has no fixed width, and finally the CRC-32 of
+     * all the preceding bytes. Encoded elements are limited to 16 MiB.
+     *
+     * @param out
+     *            the destination
+     * @param codec
+     *            the encoding of the elements
+     * @throws IOException
+     *             if out cannot be written, or an element is encoded in more
+     *             than 16 MiB
+     * @ensures [out has been written the encoding of this]
+     */
+    public final void writeTo(WritableByteChannel out, Set3aCodec<T> codec)
+            throws IOException {
+        assert out != null : "Violation of: out is not null";
+        assert codec != null : "Violation of: codec is not null";
+
+        ChannelSink sink = new ChannelSink(out);
+        int width = codec.width();
+        sink.reserve(4 * Integer.BYTES).putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putInt(width).putInt(this.size());
+        for (T x : this) {
+            ByteBuffer buffer;
+            if (width == 0) {
+                int length = codec.size(x);
+                if (length > MAX_ELEMENT_LENGTH) {
+                    throw new IOException("Element length " + length
+                            + " exceeds " + MAX_ELEMENT_LENGTH);
+                }
+                buffer = sink.reserve(Integer.BYTES + length);
+                buffer.putInt(length);
+            } else {
+                buffer = sink.reserve(width);
+            }
+            codec.encode(x, buffer);
+        }
+        sink.finish();
+    }
+
+    /**
+     * Reads a set written by {@link #writeTo(WritableByteChannel, Set3aCodec)}
+     * from {@code in}. The elements are decoded as the tree is built, so the
+     * set is rebuilt perfectly balanced in O(n) time without an intermediate
+     * collection. Reads are buffered: if {@code in} is a
+     * {@link SeekableByteChannel}, it is left positioned just past the set;
+     * otherwise bytes past the set may be consumed as well, so the rest of
+     * {@code in} belongs to {@code readFrom}.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param in
+     *            the source
+     * @param codec
+     *            the encoding of the elements
+     * @return the set read
+     * @throws IOException
+     *             if in cannot be read, ends too early, or does not hold a set
+     *             written with a codec of the same width, or if the checksum,
+     *             the order of the elements, or the length of an element is
+     *             wrong
+     * @ensures readFrom = [the set encoded at the position of #in]
+     */
+    public static <T extends Comparable<T>> Set3a<T> readFrom(
+            ReadableByteChannel in, Set3aCodec<T> codec) throws IOException {
+        assert in != null : "Violation of: in is not null";
+        assert codec != null : "Violation of: codec is not null";
+
+        ChannelSource source = new ChannelSource(in);
+        ByteBuffer header = source.require(4 * Integer.BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a serialized set");
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        int width = header.getInt();
+        if (width != codec.width()) {
+            throw new IOException("Element width " + width
+                    + " does not match codec width " + codec.width());
+        }
+        int n = header.getInt();
+        if (n < 0) {
+            throw new IOException("Negative element count " + n);
+        }
+        Iterator<T> elements = new Iterator<T>() {
+
+            /**
+             * Number of elements still to be read.
+             */
+            private int remaining = n;
+
+            /**
+             * Last element read, or null if none has been.
+             */
+            private T previous = null;
+
+            @Override
+            public boolean hasNext() {
+                return this.remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                /*
+                 * buildTree cannot throw IOException, so failures are
+                 * tunneled out unchecked and unwrapped below.
+                 */
+                try {
+                    int length = width;
+                    if (width == 0) {
+                        length = source.require(Integer.BYTES).getInt();
+                        if (length < 0 || length > MAX_ELEMENT_LENGTH) {
+                            throw new IOException(
+                                    "Invalid element length " + length);
+                        }
+                    }
+                    T x = codec.decode(source.require(length), length);
+                    if (this.previous != null
+                            && this.previous.compareTo(x) >= 0) {
+                        throw new IOException("Elements out of order");
+                    }
+                    this.previous = x;
+                    this.remaining--;
+                    return x;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+        };
+        Set3a<T> result = new Set3a<T>();
+        try {
+            result.root = buildTree(elements, n);
+            result.modCount++;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        source.finish();
+        return result;
     }
 
 }
@@ -0,0 +1,335 @@
+import java.util.Iterator;
+
+/**
+ * Blocked Bloom filter answering most {@code contains} misses of a
+ * {@code Set3a} without walking its tree, installed by
+ * {@code Set3a.enableBloomFilter}. Each element sets one bit in each of the
+ * 8 words of a single 512-bit block, so a query reads one cache line and
+ * makes no data-dependent branch. Elements are hashed with
+ * {@code hashCode}, which must therefore be consistent with
+ * {@code compareTo}.
+ *
+ * <p>
+ * Bits cannot be cleared, so the set rebuilds the filter from its elements
+ * when more elements have been removed than remain, or when more elements
+ * have been inserted than the filter was sized for; each rebuild sizes it
+ * for twice the current size, so rebuilds take amortized O(1) time per
+ * update. Counters of queries, filtered misses and false positives help to
+ * choose the number of bits per element.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class Set3aBloomFilter {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of words per block: a block is one 64-byte cache line.
+     */
+    private static final int BLOCK_WORDS = 8;
+
+    /**
+     * Number of bits per block.
+     */
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+
+    /**
+     * Largest number of blocks (a 2 GiB filter).
+     */
+    private static final int MAX_BLOCKS = 1 << 25;
+
+    /**
+     * Smallest number of elements a filter is sized for.
+     */
+    private static final int MIN_CAPACITY = 1024;
+
+    /**
+     * Odd multipliers choosing the bit set in each word of a block.
+     */
+    private static final int[] SALTS = { 0x47b6137b, 0x44974d91, 0x8824ad5b,
+            0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31 };
+
+    /**
+     * Number of bits per element the filter is sized with.
+     */
+    private final int bitsPerElement;
+
+    /**
+     * The blocks, one after the other; the number of blocks is a power of
+     * two.
+     */
+    private long[] words;
+
+    /**
+     * Number of elements the filter is sized for.
+     */
+    private int capacity;
+
+    /**
+     * Number of elements inserted since the last rebuild.
+     */
+    private int inserted;
+
+    /**
+     * Number of elements removed from the set since the last rebuild.
+     */
+    private int removed;
+
+    /**
+     * Number of queries.
+     */
+    private long queries;
+
+    /**
+     * Number of queries the filter answered negatively.
+     */
+    private long negatives;
+
+    /**
+     * Number of queries the filter let through for elements not in the set.
+     */
+    private long falsePositives;
+
+    /**
+     * Number of rebuilds.
+     */
+    private long rebuilds;
+
+    /**
+     * Returns a well-mixed 64-bit hash of {@code x}.
+     *
+     * @param x
+     *            the element
+     * @return the hash
+     */
+    private static long hash(Object x) {
+        /*
+         * Finalizer of MurmurHash3, spreading the bits of hashCode, which
+         * for many types (e.g., Integer) are far from random.
+         */
+        long h = x.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the index of the first word of the block of hash {@code h}.
+     *
+     * @param h
+     *            the hash
+     * @return the index of its block
+     */
+    private int block(long h) {
+        int blocks = this.words.length / BLOCK_WORDS;
+        return ((int) (h >>> 32) & (blocks - 1)) * BLOCK_WORDS;
+    }
+
+    /**
+     * Constructor; only {@code Set3a} creates filters, which it then
+     * rebuilds.
+     *
+     * @param bitsPerElement
+     *            the number of bits per element
+     */
+    Set3aBloomFilter(int bitsPerElement) {
+        this.bitsPerElement = bitsPerElement;
+        this.words = new long[BLOCK_WORDS];
+    }
+
+    /**
+     * Inserts {@code x}.
+     *
+     * @param x
+     *            the element
+     */
+    void add(Object x) {
+        long h = hash(x);
+        int base = this.block(h);
+        int g = (int) h;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            this.words[base + i] |= 1L << ((g * SALTS[i]) >>> 26);
+        }
+        this.inserted++;
+    }
+
+    /**
+     * Reports whether {@code x} may have been inserted; counts the query, and
+     * the negative answer if any.
+     *
+     * @param x
+     *            the element
+     * @return false if x has certainly not been inserted
+     */
+    boolean mightContain(Object x) {
+        long h = hash(x);
+        int base = this.block(h);
+        int g = (int) h;
+        long missing = 0;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            missing |= ~this.words[base + i] & (1L << ((g * SALTS[i]) >>> 26));
+        }
+        boolean result = missing == 0;
+        this.queries++;
+        if (!result) {
+            this.negatives++;
+        }
+        return result;
+    }
+
+    /**
+     * Counts a query let through for an element that was not in the set.
+     */
+    void falsePositive() {
+        this.falsePositives++;
+    }
+
+    /**
+     * Counts the removal of an element from the set.
+     */
+    void removed() {
+        this.removed++;
+    }
+
+    /**
+     * Reports whether the filter should be rebuilt for a set of {@code size}
+     * elements.
+     *
+     * @param size
+     *            the size of the set
+     * @return true iff the filter is overfull or mostly stale
+     */
+    boolean needsRebuild(int size) {
+        return this.inserted > this.capacity || this.removed > size;
+    }
+
+    /**
+     * Rebuilds the filter from the next {@code n} elements of
+     * {@code elements}, sizing it for {@code 2n} elements.
+     *
+     * @param elements
+     *            the elements of the set
+     * @param n
+     *            the number of elements
+     * @updates elements
+     */
+    void rebuild(Iterator<?> elements, int n) {
+        this.capacity = Math.max(MIN_CAPACITY, 2 * n);
+        long bits = (long) this.capacity * this.bitsPerElement;
+        int needed = (int) Math.min(MAX_BLOCKS,
+                (bits + BLOCK_BITS - 1) / BLOCK_BITS);
+        int blocks = Integer.highestOneBit(needed);
+        if (blocks < needed) {
+            blocks *= 2;
+        }
+        this.words = new long[blocks * BLOCK_WORDS];
+        this.inserted = 0;
+        this.removed = 0;
+        for (int i = 0; i < n; i++) {
+            this.add(elements.next());
+        }
+        this.rebuilds++;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports the number of bits per element the filter is sized with.
+     *
+     * @return the number of bits per element
+     */
+    public int getBitsPerElement() {
+        return this.bitsPerElement;
+    }
+
+    /**
+     * Reports the size of the filter in bytes.
+     *
+     * @return the size in bytes
+     */
+    public long getSizeInBytes() {
+        return (long) this.words.length * Long.BYTES;
+    }
+
+    /**
+     * Reports the number of {@code contains} queries.
+     *
+     * @return the number of queries
+     */
+    public long getQueries() {
+        return this.queries;
+    }
+
+    /**
+     * Reports the number of queries answered by the filter alone.
+     *
+     * @return the number of filtered misses
+     */
+    public long getNegatives() {
+        return this.negatives;
+    }
+
+    /**
+     * Reports the number of queries the filter let through for elements that
+     * were not in the set, each of which cost a full tree walk.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositives() {
+        return this.falsePositives;
+    }
+
+    /**
+     * Reports the number of hits, queries for elements in the set.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return this.queries - this.negatives - this.falsePositives;
+    }
+
+    /**
+     * Reports the fraction of misses the filter let through.
+     *
+     * @return the false-positive rate, or 0 if there were no misses
+     */
+    public double getFalsePositiveRate() {
+        long misses = this.negatives + this.falsePositives;
+        double result = 0;
+        if (misses > 0) {
+            result = (double) this.falsePositives / misses;
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of times the filter has been rebuilt.
+     *
+     * @return the number of rebuilds
+     */
+    public long getRebuilds() {
+        return this.rebuilds;
+    }
+
+    /**
+     * Resets the counters of queries, negatives, false positives and
+     * rebuilds.
+     */
+    public void reset() {
+        this.queries = 0;
+        this.negatives = 0;
+        this.falsePositives = 0;
+        this.rebuilds = 0;
+    }
+
+}
@@ -0,0 +1,163 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of the elements of a {@code Set3a}, used by
+ * {@code Set3a.writeTo} and {@code Set3a.readFrom}. A codec either has a
+ * fixed width, in which case every element takes exactly that many bytes, or
+ * has width zero, in which case each element is written with a length prefix.
+ *
+ * @param <T>
+ *            type of the elements
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public interface Set3aCodec<T> {
+
+    /**
+     * Reports the number of bytes taken by every element, or zero if
+     * elements have varying sizes.
+     *
+     * @return the fixed width, or 0
+     * @ensures width >= 0
+     */
+    int width();
+
+    /**
+     * Reports the number of bytes {@code encode} writes for {@code x}.
+     *
+     * @param x
+     *            the element
+     * @return the encoded size of x
+     * @ensures size = [the number of bytes of the encoding of x] and
+     *          (width() = 0 or size = width())
+     */
+    int size(T x);
+
+    /**
+     * Writes the encoding of {@code x} at the position of {@code out}.
+     *
+     * @param x
+     *            the element
+     * @param out
+     *            the destination
+     * @updates out
+     * @requires out.remaining() >= size(x)
+     * @ensures [out holds the encoding of x at #out.position(), and
+     *          out.position() = #out.position() + size(x)]
+     */
+    void encode(T x, ByteBuffer out);
+
+    /**
+     * Reads an element from the next {@code length} bytes of {@code in}.
+     *
+     * @param in
+     *            the source
+     * @param length
+     *            the number of bytes of the encoding
+     * @return the element
+     * @updates in
+     * @requires in.remaining() >= length
+     * @ensures [decode is the element encoded in the length bytes of #in from
+     *          #in.position(), and in.position() = #in.position() + length]
+     */
+    T decode(ByteBuffer in, int length);
+
+    /**
+     * Returns a codec writing strings in UTF-8, with a length prefix.
+     *
+     * @return the codec
+     */
+    static Set3aCodec<String> strings() {
+        return new Set3aCodec<String>() {
+
+            @Override
+            public int width() {
+                return 0;
+            }
+
+            @Override
+            public int size(String x) {
+                return x.getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            @Override
+            public void encode(String x, ByteBuffer out) {
+                out.put(x.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public String decode(ByteBuffer in, int length) {
+                byte[] bytes = new byte[length];
+                in.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+        };
+    }
+
+    /**
+     * Returns a codec writing integers as four big-endian bytes.
+     *
+     * @return the codec
+     */
+    static Set3aCodec<Integer> integers() {
+        return new Set3aCodec<Integer>() {
+
+            @Override
+            public int width() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public int size(Integer x) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Integer x, ByteBuffer out) {
+                out.putInt(x);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer in, int length) {
+                return in.getInt();
+            }
+
+        };
+    }
+
+    /**
+     * Returns a codec writing longs as eight big-endian bytes.
+     *
+     * @return the codec
+     */
+    static Set3aCodec<Long> longs() {
+        return new Set3aCodec<Long>() {
+
+            @Override
+            public int width() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public int size(Long x) {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void encode(Long x, ByteBuffer out) {
+                out.putLong(x);
+            }
+
+            @Override
+            public Long decode(ByteBuffer in, int length) {
+                return in.getLong();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,267 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the kernel operations of a {@code Set3a}, collected once
+ * {@code Set3a.enableMetrics} has been called. Besides being readable
+ * directly, they can be registered as an MXBean, and each operation emits a
+ * {@code Set3a.Operation} JFR event when that event is enabled.
+ *
+ * <p>
+ * Counters are atomic, so JMX clients on other threads see consistent
+ * values. Comparisons, visited nodes and allocations are counted by the
+ * kernel operation as it runs, so they are the work actually done; a
+ * {@code Set3a} without metrics pays only a null check per node visited.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public final class Set3aMetrics implements Set3aMetricsMXBean {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Operation number of {@code contains}.
+     */
+    static final int CONTAINS = 0;
+
+    /**
+     * Operation number of {@code add}.
+     */
+    static final int ADD = 1;
+
+    /**
+     * Operation number of {@code remove}.
+     */
+    static final int REMOVE = 2;
+
+    /**
+     * Operation number of {@code removeAny}.
+     */
+    static final int REMOVE_ANY = 3;
+
+    /**
+     * Names of the operations, indexed by operation number.
+     */
+    private static final String[] OPERATION_NAMES = { "contains", "add",
+            "remove", "removeAny" };
+
+    /**
+     * Number of buckets of each histogram.
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * Counter index of the number of operations.
+     */
+    private static final int OPERATIONS = 0;
+
+    /**
+     * Counter index of the number of comparisons.
+     */
+    private static final int COMPARISONS = 1;
+
+    /**
+     * Counter index of the number of nodes visited.
+     */
+    private static final int NODES_VISITED = 2;
+
+    /**
+     * Counter index of the number of node allocations.
+     */
+    private static final int NODE_ALLOCATIONS = 3;
+
+    /**
+     * Counter index of the sum of the search depths.
+     */
+    private static final int DEPTH_SUM = 4;
+
+    /**
+     * Counter index of the maximum search depth.
+     */
+    private static final int MAX_DEPTH = 5;
+
+    /**
+     * The counters.
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(6);
+
+    /**
+     * Number of operations for each search depth.
+     */
+    private final AtomicLongArray depths = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Latency histograms of all operations, one after the other.
+     */
+    private final AtomicLongArray latencies = new AtomicLongArray(
+            OPERATION_NAMES.length * BUCKETS);
+
+    /**
+     * Returns one histogram of {@code latencies}.
+     *
+     * @param operation
+     *            the operation number
+     * @return its latency histogram
+     */
+    private long[] latencyHistogram(int operation) {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = this.latencies.get(operation * BUCKETS + i);
+        }
+        return result;
+    }
+
+    /**
+     * Constructor; only {@code Set3a} creates metrics.
+     */
+    Set3aMetrics() {
+    }
+
+    /**
+     * Records one operation.
+     *
+     * @param operation
+     *            the operation number
+     * @param nanos
+     *            the time it took
+     * @param depth
+     *            the number of nodes on its search path
+     * @param comparisons
+     *            the number of calls to compareTo it made
+     * @param visited
+     *            the number of nodes it visited
+     * @param allocations
+     *            the number of nodes it allocated
+     */
+    void record(int operation, long nanos, int depth, int comparisons,
+            int visited, int allocations) {
+        this.counters.incrementAndGet(OPERATIONS);
+        this.counters.addAndGet(COMPARISONS, comparisons);
+        this.counters.addAndGet(NODES_VISITED, visited);
+        this.counters.addAndGet(NODE_ALLOCATIONS, allocations);
+        this.counters.addAndGet(DEPTH_SUM, depth);
+        this.counters.accumulateAndGet(MAX_DEPTH, depth, Math::max);
+        this.depths.incrementAndGet(Math.min(depth, BUCKETS - 1));
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos));
+        this.latencies.incrementAndGet(
+                operation * BUCKETS + Math.min(bucket, BUCKETS - 1));
+
+        Set3aOperationEvent event = new Set3aOperationEvent();
+        if (event.isEnabled()) {
+            event.operation = OPERATION_NAMES[operation];
+            event.depth = depth;
+            event.comparisons = comparisons;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Registers {@code this} with the platform MBean server, under
+     * {@code Set3a:type=Metrics,name=<name>}, and returns that object name.
+     *
+     * @param name
+     *            the name distinguishing this set
+     * @return the object name registered
+     * @throws JMException
+     *             if the name is malformed or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        assert name != null : "Violation of: name is not null";
+
+        ObjectName result = new ObjectName(
+                "Set3a:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, result);
+        return result;
+    }
+
+    @Override
+    public long getOperations() {
+        return this.counters.get(OPERATIONS);
+    }
+
+    @Override
+    public long getComparisons() {
+        return this.counters.get(COMPARISONS);
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return this.counters.get(NODES_VISITED);
+    }
+
+    @Override
+    public long getNodeAllocations() {
+        return this.counters.get(NODE_ALLOCATIONS);
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) this.counters.get(MAX_DEPTH);
+    }
+
+    @Override
+    public double getMeanDepth() {
+        long operations = this.counters.get(OPERATIONS);
+        double result = 0;
+        if (operations > 0) {
+            result = (double) this.counters.get(DEPTH_SUM) / operations;
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = this.depths.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getContainsLatencyHistogram() {
+        return this.latencyHistogram(CONTAINS);
+    }
+
+    @Override
+    public long[] getAddLatencyHistogram() {
+        return this.latencyHistogram(ADD);
+    }
+
+    @Override
+    public long[] getRemoveLatencyHistogram() {
+        return this.latencyHistogram(REMOVE);
+    }
+
+    @Override
+    public long[] getRemoveAnyLatencyHistogram() {
+        return this.latencyHistogram(REMOVE_ANY);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < this.counters.length(); i++) {
+            this.counters.set(i, 0);
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            this.depths.set(i, 0);
+        }
+        for (int i = 0; i < this.latencies.length(); i++) {
+            this.latencies.set(i, 0);
+        }
+    }
+
+}
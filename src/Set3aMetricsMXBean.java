@@ -0,0 +1,96 @@
+/**
+ * Management interface of {@code Set3aMetrics}, under which the metrics of a
+ * {@code Set3a} are exposed through JMX. Depths count the nodes on a search
+ * path, so the root is at depth 1. Latency histograms have one bucket per
+ * power of two: bucket {@code i} counts operations that took from
+ * {@code 2^(i-1)} (0 for bucket 0) up to {@code 2^i - 1} nanoseconds.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public interface Set3aMetricsMXBean {
+
+    /**
+     * Reports the number of kernel operations recorded.
+     *
+     * @return the number of operations
+     */
+    long getOperations();
+
+    /**
+     * Reports the number of calls to {@code compareTo}.
+     *
+     * @return the number of comparisons
+     */
+    long getComparisons();
+
+    /**
+     * Reports the number of nodes visited.
+     *
+     * @return the number of nodes visited
+     */
+    long getNodesVisited();
+
+    /**
+     * Reports the number of nodes allocated.
+     *
+     * @return the number of node allocations
+     */
+    long getNodeAllocations();
+
+    /**
+     * Reports the largest search depth recorded.
+     *
+     * @return the maximum depth
+     */
+    int getMaxDepth();
+
+    /**
+     * Reports the mean search depth, or 0 if no operation was recorded.
+     *
+     * @return the mean depth
+     */
+    double getMeanDepth();
+
+    /**
+     * Reports the number of operations for each search depth.
+     *
+     * @return the histogram, indexed by depth
+     */
+    long[] getDepthHistogram();
+
+    /**
+     * Reports the latency histogram of {@code contains}.
+     *
+     * @return the histogram, indexed by bucket
+     */
+    long[] getContainsLatencyHistogram();
+
+    /**
+     * Reports the latency histogram of {@code add}.
+     *
+     * @return the histogram, indexed by bucket
+     */
+    long[] getAddLatencyHistogram();
+
+    /**
+     * Reports the latency histogram of {@code remove}.
+     *
+     * @return the histogram, indexed by bucket
+     */
+    long[] getRemoveLatencyHistogram();
+
+    /**
+     * Reports the latency histogram of {@code removeAny}.
+     *
+     * @return the histogram, indexed by bucket
+     */
+    long[] getRemoveAnyLatencyHistogram();
+
+    /**
+     * Resets every metric to zero.
+     */
+    void reset();
+
+}
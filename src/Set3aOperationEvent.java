@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted by {@code Set3aMetrics} for each kernel operation of a
+ * {@code Set3a} with metrics enabled, when the event is enabled in the
+ * recording.
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+@Name("Set3a.Operation")
+@Label("Set3a Operation")
+@Category("Set3a")
+@Description("Kernel operation on a Set3a with metrics enabled")
+final class Set3aOperationEvent extends Event {
+
+    /**
+     * Name of the operation.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * Number of nodes on the search path.
+     */
+    @Label("Depth")
+    int depth;
+
+    /**
+     * Number of calls to {@code compareTo}.
+     */
+    @Label("Comparisons")
+    int comparisons;
+
+    /**
+     * Time taken by the operation.
+     */
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+}
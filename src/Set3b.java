@@ -0,0 +1,660 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a B+-tree of elements with implementations of
+ * primary methods. Each node holds a sorted array of up to {@code ORDER}
+ * labels, so a lookup touches about log_ORDER(n) nodes instead of log_2(n),
+ * and every label lives in a leaf. Leaves are linked in increasing order, and
+ * iteration walks them in sequence.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BPLUS(
+ *   n: node of T
+ *  ): boolean satisfies
+ *  [n.keys[0, n.count) is strictly increasing, and n.count <= ORDER, and
+ *   n.count >= MIN_COUNT unless n is the root, and
+ *   if n is internal: it has n.count + 1 children, all keys of
+ *   n.children[i] are < n.keys[i] and all keys of n.children[i+1] are
+ *   >= n.keys[i], each child satisfies IS_BPLUS, and all leaves are at the
+ *   same depth; and the leaves are linked through next in increasing order]
+ *
+ * LABELS(
+ *   n: node of T
+ *  ): finite set of T satisfies
+ *  [the union of keys[0, count) over the leaves below n]
+ * </pre>
+ * @convention IS_BPLUS($this.root) and $this.size = |LABELS($this.root)|
+ * @correspondence this = LABELS($this.root)
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public class Set3b<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Maximum number of labels of a node.
+     */
+    private static final int ORDER = 32;
+
+    /**
+     * Minimum number of labels of a node other than the root.
+     */
+    private static final int MIN_COUNT = ORDER / 2;
+
+    /**
+     * Node of the B+-tree: a leaf if {@code children} is null, or else an
+     * internal node whose {@code keys} separate its children. Arrays have
+     * room for one extra entry, so a node can overflow before it is split.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class Node<T> {
+
+        /**
+         * Labels (in a leaf) or separators (in an internal node), in
+         * [0, count).
+         */
+        private final Object[] keys = new Object[ORDER + 1];
+
+        /**
+         * Children, in [0, count], or null for a leaf.
+         */
+        private final Node<T>[] children;
+
+        /**
+         * Next leaf in increasing order, or null; unused in internal nodes.
+         */
+        private Node<T> next;
+
+        /**
+         * Number of keys.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         *
+         * @param leaf
+         *            whether the node is a leaf
+         */
+        @SuppressWarnings("unchecked")
+        Node(boolean leaf) {
+            if (leaf) {
+                this.children = null;
+            } else {
+                this.children = (Node<T>[]) new Node<?>[ORDER + 2];
+            }
+        }
+
+        /**
+         * Reports whether {@code this} is a leaf.
+         *
+         * @return true iff this is a leaf
+         */
+        boolean isLeaf() {
+            return this.children == null;
+        }
+
+        /**
+         * Returns key {@code i}.
+         *
+         * @param i
+         *            the index
+         * @return the key
+         */
+        @SuppressWarnings("unchecked")
+        T key(int i) {
+            return (T) this.keys[i];
+        }
+
+    }
+
+    /**
+     * Root of the tree, never null.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of labels in the tree.
+     */
+    private int size;
+
+    /**
+     * Searches the keys of {@code n} for {@code x}, in the manner of
+     * {@code Arrays.binarySearch}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the node
+     * @param x
+     *            the label to be searched for
+     * @return the index of x if it is a key of n, or else -(p + 1) where p is
+     *         the number of keys of n smaller than x
+     */
+    private static <T extends Comparable<T>> int search(Node<T> n, T x) {
+        int low = 0;
+        int high = n.count - 1;
+        int result = -1;
+        while (low <= high && result < 0) {
+            int mid = (low + high) >>> 1;
+            int c = x.compareTo(n.key(mid));
+            if (c > 0) {
+                low = mid + 1;
+            } else if (c < 0) {
+                high = mid - 1;
+            } else {
+                result = mid;
+            }
+        }
+        if (result < 0) {
+            result = -(low + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the child of internal node {@code n} where
+     * {@code x} belongs.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the internal node
+     * @param x
+     *            the label
+     * @return the child index
+     */
+    private static <T extends Comparable<T>> int childIndex(Node<T> n, T x) {
+        int i = search(n, x);
+        int result;
+        if (i >= 0) {
+            result = i + 1;
+        } else {
+            result = -(i + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts {@code key} at index {@code i} of the keys of {@code n}, and,
+     * if {@code n} is internal, {@code child} at index {@code i + 1} of its
+     * children.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the node
+     * @param i
+     *            the index
+     * @param key
+     *            the key
+     * @param child
+     *            the child to the right of key, or null for a leaf
+     * @requires 0 <= i <= n.count <= ORDER
+     */
+    private static <T> void insertAt(Node<T> n, int i, Object key,
+            Node<T> child) {
+        System.arraycopy(n.keys, i, n.keys, i + 1, n.count - i);
+        n.keys[i] = key;
+        if (!n.isLeaf()) {
+            System.arraycopy(n.children, i + 1, n.children, i + 2,
+                    n.count - i);
+            n.children[i + 1] = child;
+        }
+        n.count++;
+    }
+
+    /**
+     * Removes the key at index {@code i} of {@code n}, and, if {@code n} is
+     * internal, the child at index {@code i + 1}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the node
+     * @param i
+     *            the index
+     * @requires 0 <= i < n.count
+     */
+    private static <T> void removeAt(Node<T> n, int i) {
+        System.arraycopy(n.keys, i + 1, n.keys, i, n.count - i - 1);
+        n.keys[n.count - 1] = null;
+        if (!n.isLeaf()) {
+            System.arraycopy(n.children, i + 2, n.children, i + 1,
+                    n.count - i - 1);
+            n.children[n.count] = null;
+        }
+        n.count--;
+    }
+
+    /**
+     * Splits {@code n}, which has overflowed, moving its upper half to a new
+     * right sibling, which is returned. The separator to insert in the parent
+     * is the first key of the sibling for a leaf, and is left at
+     * {@code n.keys[n.count]} for an internal node.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the node
+     * @return the new right sibling
+     * @requires n.count = ORDER + 1
+     */
+    private static <T> Node<T> split(Node<T> n) {
+        Node<T> right = new Node<T>(n.isLeaf());
+        int half = n.count / 2;
+        if (n.isLeaf()) {
+            right.count = n.count - half;
+            System.arraycopy(n.keys, half, right.keys, 0, right.count);
+            Arrays.fill(n.keys, half, n.count, null);
+            n.count = half;
+            right.next = n.next;
+            n.next = right;
+        } else {
+            /*
+             * keys[half] moves up to the parent; it is left just past the
+             * remaining keys for the caller to pick up.
+             */
+            right.count = n.count - half - 1;
+            System.arraycopy(n.keys, half + 1, right.keys, 0, right.count);
+            System.arraycopy(n.children, half + 1, right.children, 0,
+                    right.count + 1);
+            Arrays.fill(n.keys, half + 1, n.count, null);
+            Arrays.fill(n.children, half + 1, n.count + 1, null);
+            n.count = half;
+        }
+        return right;
+    }
+
+    /**
+     * Inserts {@code x} below {@code n}. If {@code n} overflows it is split,
+     * and the new right sibling is returned, with the separator to insert in
+     * the parent at {@code n.keys[n.count]} (see {@code split}).
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the subtree
+     * @param x
+     *            the label to be inserted
+     * @return the new right sibling of n, or null if n was not split
+     * @requires x is not in LABELS(n)
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Node<T> n, T x) {
+        Node<T> result = null;
+        if (n.isLeaf()) {
+            insertAt(n, -(search(n, x) + 1), x, null);
+        } else {
+            int i = childIndex(n, x);
+            Node<T> sibling = insert(n.children[i], x);
+            if (sibling != null) {
+                Object separator;
+                if (sibling.isLeaf()) {
+                    separator = sibling.keys[0];
+                } else {
+                    Node<T> child = n.children[i];
+                    separator = child.keys[child.count];
+                    child.keys[child.count] = null;
+                }
+                insertAt(n, i, separator, sibling);
+            }
+        }
+        if (n.count > ORDER) {
+            result = split(n);
+        }
+        return result;
+    }
+
+    /**
+     * Restores the minimum count of child {@code i} of internal node
+     * {@code n}, which has one key too few, by borrowing a key from a
+     * sibling or merging with it.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the parent
+     * @param i
+     *            the index of the child that underflowed
+     * @requires n.children[i].count = MIN_COUNT - 1
+     */
+    private static <T> void fixUnderflow(Node<T> n, int i) {
+        Node<T> child = n.children[i];
+        if (i > 0 && n.children[i - 1].count > MIN_COUNT) {
+            /*
+             * Borrow the last key of the left sibling.
+             */
+            Node<T> left = n.children[i - 1];
+            if (child.isLeaf()) {
+                insertAt(child, 0, left.keys[left.count - 1], null);
+                n.keys[i - 1] = child.keys[0];
+            } else {
+                System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+                System.arraycopy(child.children, 0, child.children, 1,
+                        child.count + 1);
+                child.keys[0] = n.keys[i - 1];
+                child.children[0] = left.children[left.count];
+                child.count++;
+                n.keys[i - 1] = left.keys[left.count - 1];
+                left.children[left.count] = null;
+            }
+            left.keys[left.count - 1] = null;
+            left.count--;
+        } else if (i < n.count && n.children[i + 1].count > MIN_COUNT) {
+            /*
+             * Borrow the first key of the right sibling.
+             */
+            Node<T> right = n.children[i + 1];
+            if (child.isLeaf()) {
+                child.keys[child.count] = right.keys[0];
+                child.count++;
+                removeAt(right, 0);
+                n.keys[i] = right.keys[0];
+            } else {
+                child.keys[child.count] = n.keys[i];
+                child.children[child.count + 1] = right.children[0];
+                child.count++;
+                n.keys[i] = right.keys[0];
+                System.arraycopy(right.keys, 1, right.keys, 0,
+                        right.count - 1);
+                System.arraycopy(right.children, 1, right.children, 0,
+                        right.count);
+                right.keys[right.count - 1] = null;
+                right.children[right.count] = null;
+                right.count--;
+            }
+        } else {
+            /*
+             * Both siblings are at the minimum: merge child with one of them,
+             * always into the left node of the pair.
+             */
+            int l = i;
+            if (i == n.count) {
+                l = i - 1;
+            }
+            Node<T> left = n.children[l];
+            Node<T> right = n.children[l + 1];
+            if (left.isLeaf()) {
+                System.arraycopy(right.keys, 0, left.keys, left.count,
+                        right.count);
+                left.count += right.count;
+                left.next = right.next;
+            } else {
+                left.keys[left.count] = n.keys[l];
+                System.arraycopy(right.keys, 0, left.keys, left.count + 1,
+                        right.count);
+                System.arraycopy(right.children, 0, left.children,
+                        left.count + 1, right.count + 1);
+                left.count += right.count + 1;
+            }
+            removeAt(n, l);
+        }
+    }
+
+    /**
+     * Removes {@code x} from below {@code n}, and returns the label removed.
+     * {@code n} may be left with one key fewer than the minimum, which the
+     * caller fixes.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the subtree
+     * @param x
+     *            the label to be removed
+     * @return the label removed
+     * @requires x is in LABELS(n)
+     */
+    private static <T extends Comparable<T>> T delete(Node<T> n, T x) {
+        T result;
+        if (n.isLeaf()) {
+            int i = search(n, x);
+            result = n.key(i);
+            removeAt(n, i);
+        } else {
+            int i = childIndex(n, x);
+            result = delete(n.children[i], x);
+            if (n.children[i].count < MIN_COUNT) {
+                fixUnderflow(n, i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the leftmost leaf of {@code n}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param n
+     *            the subtree
+     * @return the leftmost leaf
+     */
+    private static <T> Node<T> firstLeaf(Node<T> n) {
+        Node<T> result = n;
+        while (!result.isLeaf()) {
+            result = result.children[0];
+        }
+        return result;
+    }
+
+    /**
+     * Iterator walking the linked leaves in sequence.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class Set3bIterator<T> implements Iterator<T> {
+
+        /**
+         * Leaf holding the next label, or null at the end.
+         */
+        private Node<T> leaf;
+
+        /**
+         * Index of the next label in leaf.
+         */
+        private int index;
+
+        /**
+         * Constructor.
+         *
+         * @param root
+         *            the root of the tree to iterate over
+         */
+        Set3bIterator(Node<T> root) {
+            this.leaf = firstLeaf(root);
+            this.skipEmpty();
+        }
+
+        /**
+         * Moves past exhausted leaves.
+         */
+        private void skipEmpty() {
+            while (this.leaf != null && this.index == this.leaf.count) {
+                this.leaf = this.leaf.next;
+                this.index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.leaf != null;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = this.leaf.key(this.index);
+            this.index++;
+            this.skipEmpty();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = new Node<T>(true);
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3b() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3b<?> : ""
+                + "Violation of: source is of dynamic type Set3b<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3b<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3b<T> localSource = (Set3b<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        Node<T> sibling = insert(this.root, x);
+        if (sibling != null) {
+            /*
+             * The root split: grow the tree by one level.
+             */
+            Node<T> newRoot = new Node<T>(false);
+            newRoot.children[0] = this.root;
+            if (sibling.isLeaf()) {
+                newRoot.keys[0] = sibling.keys[0];
+            } else {
+                newRoot.keys[0] = this.root.keys[this.root.count];
+                this.root.keys[this.root.count] = null;
+            }
+            newRoot.children[1] = sibling;
+            newRoot.count = 1;
+            this.root = newRoot;
+        }
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        T result = delete(this.root, x);
+        if (!this.root.isLeaf() && this.root.count == 0) {
+            /*
+             * The root lost its last separator: shrink the tree by one level.
+             */
+            this.root = this.root.children[0];
+        }
+        this.size--;
+        return result;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * The last label of the rightmost leaf leaves without shifting any
+         * array entries.
+         */
+        Node<T> n = this.root;
+        while (!n.isLeaf()) {
+            n = n.children[n.count];
+        }
+        return this.remove(n.key(n.count - 1));
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node<T> n = this.root;
+        while (!n.isLeaf()) {
+            n = n.children[childIndex(n, x)];
+        }
+        return search(n, x) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3bIterator<T>(this.root);
+    }
+
+}
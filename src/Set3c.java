@@ -0,0 +1,910 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * Thread-safe {@code Set} represented as a height-balanced AVL binary search
+ * tree guarded by a {@code StampedLock}. Lookups ({@code contains},
+ * {@code floor}, {@code lower}, {@code ceiling}, {@code higher},
+ * {@code subSet}, {@code size}) first run without taking the lock, as
+ * optimistic reads validated against the lock stamp, and only fall back to
+ * the read lock when a writer interfered. Updates take the write lock.
+ *
+ * <p>
+ * Optimistic readers may observe the tree half-way through an update, so
+ * node labels are final (a removed node is unlinked, never relabeled), and
+ * an optimistic descent gives up after {@code MAX_HEIGHT} steps; either way
+ * the stamp no longer validates and the lookup is retried under the read
+ * lock. Elements must be safe to compare from several threads at once.
+ * </p>
+ *
+ * <p>
+ * Every update takes the single write lock of the whole set, so writers are
+ * serialized against each other and against lock-holding readers, however
+ * far apart their keys are; only the optimistic lookups scale with threads.
+ * Because labels are final, the tree cannot share {@code Set3a}'s code, which
+ * removes a node by relabeling it: it is its own recursive AVL tree, without
+ * subtree sizes, so it has no rank or positional queries and changes to the
+ * balancing of either class must be made in both.
+ * </p>
+ *
+ * <p>
+ * {@code iterator} returns a snapshot of the elements taken under the read
+ * lock, so iteration never blocks writers and never fails.
+ * </p>
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [for every node n of tree, the heights of the left and right subtrees of
+ *   n differ by at most one, and n.height is the height of the subtree
+ *   rooted at n]
+ * </pre>
+ * @convention <pre>
+ * [outside of a write-locked section]
+ *  IS_BST($this.root)  and  IS_AVL($this.root)  and
+ *  $this.size = |labels($this.root)|
+ * </pre>
+ * @correspondence this = labels($this.root)
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public class Set3c<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the AVL tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of {@code this}; final so that optimistic readers never see
+         * it unset.
+         */
+        private final T label;
+
+        /**
+         * Left subtree, or null if empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Right subtree, or null if empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Height of the subtree rooted at {@code this}.
+         */
+        private int height;
+
+        /**
+         * Constructor of a leaf node.
+         *
+         * @param label
+         *            the label of the new node
+         */
+        Node(T label) {
+            this.label = label;
+            this.height = 1;
+        }
+
+    }
+
+    /**
+     * Maximum height of an AVL tree with fewer than 2^31 nodes is 45; an
+     * optimistic descent longer than this has certainly raced with a writer.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Marker returned by an optimistic search that gave up.
+     */
+    private static final Object RETRY = new Object();
+
+    /**
+     * Source of the ids of the sets.
+     */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /**
+     * Unique id of {@code this}, ordering the locks of two sets.
+     */
+    private final long id = NEXT_ID.getAndIncrement();
+
+    /**
+     * Lock guarding the representation.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Root of the tree of elements included in {@code this}, or null if
+     * {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of elements included in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Returns the height of {@code t}.
+     *
+     * @param t
+     *            the tree, or null for the empty tree
+     * @return the height of t
+     * @ensures height = [height of t]
+     */
+    private static int height(Node<?> t) {
+        int h = 0;
+        if (t != null) {
+            h = t.height;
+        }
+        return h;
+    }
+
+    /**
+     * Recomputes the height of {@code t} from the heights of its subtrees.
+     *
+     * @param t
+     *            the node to update
+     * @updates t.height
+     * @requires t /= null
+     * @ensures t.height = 1 + max(height(t.left), height(t.right))
+     */
+    private static void update(Node<?> t) {
+        t.height = 1 + Math.max(height(t.left), height(t.right));
+    }
+
+    /**
+     * Rotates {@code t} to the right and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= null and t.left /= null
+     */
+    private static <T> Node<T> rotateRight(Node<T> t) {
+        Node<T> l = t.left;
+        t.left = l.right;
+        l.right = t;
+        update(t);
+        update(l);
+        return l;
+    }
+
+    /**
+     * Rotates {@code t} to the left and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the root of the tree to rotate
+     * @return the new root
+     * @requires t /= null and t.right /= null
+     */
+    private static <T> Node<T> rotateLeft(Node<T> t) {
+        Node<T> r = t.right;
+        t.right = r.left;
+        r.left = t;
+        update(t);
+        update(r);
+        return r;
+    }
+
+    /**
+     * Restores the AVL property at {@code t}, whose subtrees are AVL trees
+     * with heights differing by at most two, and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the root of the tree to rebalance
+     * @return the new root
+     * @requires t /= null and |height(t.left) - height(t.right)| <= 2
+     * @ensures IS_AVL(balance) and labels(balance) = labels(t)
+     */
+    private static <T> Node<T> balance(Node<T> t) {
+        Node<T> result = t;
+        int diff = height(t.left) - height(t.right);
+        if (diff > 1) {
+            if (height(t.left.left) < height(t.left.right)) {
+                t.left = rotateLeft(t.left);
+            }
+            result = rotateRight(t);
+        } else if (diff < -1) {
+            if (height(t.right.right) < height(t.right.left)) {
+                t.right = rotateRight(t.right);
+            }
+            result = rotateLeft(t);
+        } else {
+            update(t);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts {@code x} in {@code t} and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree in which to insert
+     * @param x
+     *            the label to be inserted
+     * @return the new root
+     * @requires IS_BST(t) and IS_AVL(t) and x is not in labels(t)
+     * @ensures IS_BST(insertInTree) and IS_AVL(insertInTree) and
+     *          labels(insertInTree) = labels(t) union {x}
+     */
+    private static <T extends Comparable<T>> Node<T> insertInTree(Node<T> t,
+            T x) {
+        Node<T> result;
+        if (t == null) {
+            result = new Node<T>(x);
+        } else {
+            if (x.compareTo(t.label) < 0) {
+                t.left = insertInTree(t.left, x);
+            } else {
+                t.right = insertInTree(t.right, x);
+            }
+            result = balance(t);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node with the smallest (left-most) label in {@code t}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @return the node with the smallest label
+     * @requires t /= null
+     */
+    private static <T> Node<T> smallest(Node<T> t) {
+        Node<T> n = t;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    /**
+     * Unlinks the node with the smallest label from {@code t} and returns the
+     * new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree from which to remove the smallest label
+     * @return the new root
+     * @requires IS_BST(t) and IS_AVL(t) and t /= null
+     * @ensures <pre>
+     * IS_BST(removeSmallest)  and  IS_AVL(removeSmallest)  and
+     *  labels(removeSmallest) = labels(t) \ {[the smallest label in t]}
+     * </pre>
+     */
+    private static <T> Node<T> removeSmallest(Node<T> t) {
+        Node<T> result;
+        if (t.left == null) {
+            result = t.right;
+        } else {
+            t.left = removeSmallest(t.left);
+            result = balance(t);
+        }
+        return result;
+    }
+
+    /**
+     * Unlinks the node labeled {@code x} from {@code t} and returns the new
+     * root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree from which to remove label {@code x}
+     * @param x
+     *            the label to be removed
+     * @return the new root
+     * @requires IS_BST(t) and IS_AVL(t) and x is in labels(t)
+     * @ensures <pre>
+     * IS_BST(removeFromTree)  and  IS_AVL(removeFromTree)  and
+     *  labels(removeFromTree) = labels(t) \ {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> removeFromTree(Node<T> t,
+            T x) {
+        Node<T> result;
+        int c = x.compareTo(t.label);
+        if (c < 0) {
+            t.left = removeFromTree(t.left, x);
+            result = balance(t);
+        } else if (c > 0) {
+            t.right = removeFromTree(t.right, x);
+            result = balance(t);
+        } else if (t.left == null) {
+            result = t.right;
+        } else if (t.right == null) {
+            result = t.left;
+        } else {
+            /*
+             * Both subtrees are non-empty: the smallest node of the right
+             * subtree takes the place of t (labels are final, so the node
+             * itself moves).
+             */
+            Node<T> s = smallest(t.right);
+            s.right = removeSmallest(t.right);
+            s.left = t.left;
+            result = balance(s);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the label of {@code t} equal to {@code x}, or the closest one
+     * from below or from above, or null if there is none. With
+     * {@code optimistic} set, gives up after {@code MAX_HEIGHT} steps and
+     * returns {@code RETRY}.
+     *
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the label to be approached
+     * @param below
+     *            whether to look for labels smaller, rather than larger, than
+     *            x
+     * @param inclusive
+     *            whether x itself qualifies
+     * @param exact
+     *            whether only x itself qualifies
+     * @param optimistic
+     *            whether the tree may be changing during the search
+     * @return the qualifying label, or null, or RETRY
+     * @requires (IS_BST(t) or optimistic) and (inclusive or not exact)
+     */
+    private static Object search(Node<?> t, Comparable<Object> x,
+            boolean below, boolean inclusive, boolean exact,
+            boolean optimistic) {
+        Object result = null;
+        Node<?> n = t;
+        int steps = 0;
+        while (n != null) {
+            Object label = n.label;
+            int c = x.compareTo(label);
+            if (c == 0 && inclusive) {
+                result = label;
+                n = null;
+            } else {
+                if (c == 0) {
+                    /*
+                     * x itself is excluded: carry on as if x were just past
+                     * label on the side searched.
+                     */
+                    c = below ? -1 : 1;
+                }
+                if (!exact && (c > 0) == below) {
+                    result = label;
+                }
+                if (c < 0) {
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+                steps++;
+                if (optimistic && steps > MAX_HEIGHT) {
+                    result = RETRY;
+                    n = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result of {@link #search} on the tree of {@code this},
+     * first optimistically without locking and, if a writer interfered, again
+     * under the read lock.
+     *
+     * @param x
+     *            the label to be approached
+     * @param below
+     *            whether to look for labels smaller, rather than larger, than
+     *            x
+     * @param inclusive
+     *            whether x itself qualifies
+     * @param exact
+     *            whether only x itself qualifies
+     * @return the qualifying label, or null
+     * @requires inclusive or not exact
+     */
+    @SuppressWarnings("unchecked")
+    private T readSearch(T x, boolean below, boolean inclusive,
+            boolean exact) {
+        Comparable<Object> key = castKey(x);
+        Object result = null;
+        boolean done = false;
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            result = search(this.root, key, below, inclusive, exact, true);
+            done = result != RETRY && this.lock.validate(stamp);
+        }
+        if (!done) {
+            stamp = this.lock.readLock();
+            try {
+                result = search(this.root, key, below, inclusive, exact,
+                        false);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return (T) result;
+    }
+
+    /**
+     * Appends the labels of {@code t}, in order, to {@code labels} starting
+     * at position {@code pos}, and returns the position after the last one.
+     *
+     * @param t
+     *            the tree
+     * @param labels
+     *            the array receiving the labels
+     * @param pos
+     *            the first position to fill
+     * @return pos + |t|
+     */
+    private static int collect(Node<?> t, Object[] labels, int pos) {
+        int next = pos;
+        if (t != null) {
+            next = collect(t.left, labels, next);
+            labels[next] = t.label;
+            next = collect(t.right, labels, next + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Appends to {@code labels}, in order, the labels of {@code t} from
+     * {@code from}, inclusive, to {@code to}, exclusive, walking the tree
+     * with an explicit stack. Gives up, returning false, after visiting
+     * {@code limit} nodes or going deeper than {@code MAX_HEIGHT}, which can
+     * only happen if the tree is changing during the walk.
+     *
+     * @param t
+     *            the tree
+     * @param from
+     *            the inclusive lower bound
+     * @param to
+     *            the exclusive upper bound
+     * @param labels
+     *            the list receiving the labels
+     * @param limit
+     *            the number of nodes to visit before giving up
+     * @return true iff the walk completed
+     * @updates labels
+     */
+    private static boolean collectRange(Node<?> t, Comparable<Object> from,
+            Comparable<Object> to, List<Object> labels, int limit) {
+        Node<?>[] stack = new Node<?>[MAX_HEIGHT];
+        int top = 0;
+        int visited = 0;
+        boolean ok = true;
+        Node<?> n = t;
+        while (ok && (n != null || top > 0)) {
+            /*
+             * Push the nodes not below from on the way down to the left;
+             * the subtrees left of the others hold nothing in range.
+             */
+            while (ok && n != null) {
+                visited++;
+                Object label = n.label;
+                if (from.compareTo(label) <= 0) {
+                    if (top == MAX_HEIGHT) {
+                        ok = false;
+                    } else {
+                        stack[top] = n;
+                        top++;
+                        n = n.left;
+                    }
+                } else {
+                    n = n.right;
+                }
+                ok = ok && visited <= limit;
+            }
+            if (ok) {
+                top--;
+                Node<?> m = stack[top];
+                Object label = m.label;
+                if (to.compareTo(label) > 0) {
+                    labels.add(label);
+                    n = m.right;
+                } else {
+                    /*
+                     * Every label still to come is at least this one.
+                     */
+                    top = 0;
+                    n = null;
+                }
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3c() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.createNewRep();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3c<?> : ""
+                + "Violation of: source is of dynamic type Set3c<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3c<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3c<T> localSource = (Set3c<T>) source;
+        /*
+         * Lock both sets in the order of their ids, so that two opposite
+         * transfers cannot deadlock; unlike identity hash codes, ids are
+         * never equal.
+         */
+        Set3c<T> first = this;
+        Set3c<T> second = localSource;
+        if (this.id > localSource.id) {
+            first = localSource;
+            second = this;
+        }
+        long firstStamp = first.lock.writeLock();
+        try {
+            long secondStamp = second.lock.writeLock();
+            try {
+                this.root = localSource.root;
+                this.size = localSource.size;
+                localSource.createNewRep();
+            } finally {
+                second.lock.unlockWrite(secondStamp);
+            }
+        } finally {
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        long stamp = this.lock.writeLock();
+        try {
+            assert search(this.root, castKey(x), false, true, true,
+                    false) == null : "Violation of: x is not in this";
+
+            this.root = insertInTree(this.root, x);
+            this.size++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        long stamp = this.lock.writeLock();
+        try {
+            @SuppressWarnings("unchecked")
+            T label = (T) search(this.root, castKey(x), false, true, true,
+                    false);
+            assert label != null : "Violation of: x is in this";
+
+            this.root = removeFromTree(this.root, x);
+            this.size--;
+            return label;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final T removeAny() {
+        long stamp = this.lock.writeLock();
+        try {
+            assert this.size > 0 : "Violation of: this /= empty_set";
+
+            T label = smallest(this.root).label;
+            this.root = removeSmallest(this.root);
+            this.size--;
+            return label;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.readSearch(x, false, true, true) != null;
+    }
+
+    @Override
+    public final int size() {
+        long stamp = this.lock.tryOptimisticRead();
+        int result = this.size;
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                result = this.size;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        Object[] labels;
+        long stamp = this.lock.readLock();
+        try {
+            labels = new Object[this.size];
+            collect(this.root, labels, 0);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+        return new SnapshotIterator(labels);
+    }
+
+    /*
+     * Navigation methods -----------------------------------------------------
+     */
+
+    /**
+     * Returns the largest element of {@code this} that is at most {@code x},
+     * or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the largest element <= x, or null
+     * @ensures floor = [the largest y in this with y <= x, or null if none]
+     */
+    public final T floor(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.readSearch(x, true, true, false);
+    }
+
+    /**
+     * Returns the largest element of {@code this} that is less than
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the largest element < x, or null
+     * @ensures lower = [the largest y in this with y < x, or null if none]
+     */
+    public final T lower(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.readSearch(x, true, false, false);
+    }
+
+    /**
+     * Returns the smallest element of {@code this} that is at least
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the smallest element >= x, or null
+     * @ensures ceiling = [the smallest y in this with y >= x, or null if none]
+     */
+    public final T ceiling(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.readSearch(x, false, true, false);
+    }
+
+    /**
+     * Returns the smallest element of {@code this} that is greater than
+     * {@code x}, or null if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the smallest element > x, or null
+     * @ensures higher = [the smallest y in this with y > x, or null if none]
+     */
+    public final T higher(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.readSearch(x, false, false, false);
+    }
+
+    /**
+     * Returns the elements of {@code this} from {@code from}, inclusive, to
+     * {@code to}, exclusive, in increasing order, as they all were at one
+     * instant. The range is first read without locking, visiting only
+     * O(log |this| + k) nodes for k elements in range, and read again under
+     * the read lock only if a writer interfered.
+     *
+     * @param from
+     *            the inclusive lower bound
+     * @param to
+     *            the exclusive upper bound
+     * @return the elements in range
+     * @requires from <= to
+     * @ensures subSet = [the elements y of this with from <= y < to, in
+     *          increasing order]
+     */
+    @SuppressWarnings("unchecked")
+    public final List<T> subSet(T from, T to) {
+        assert from != null : "Violation of: from is not null";
+        assert to != null : "Violation of: to is not null";
+        assert from.compareTo(to) <= 0 : "Violation of: from <= to";
+
+        List<Object> result = new ArrayList<>();
+        boolean done = false;
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            /*
+             * A consistent tree has at most |this| nodes in range and
+             * MAX_HEIGHT on each of the two boundary paths.
+             */
+            int limit = this.size + 2 * MAX_HEIGHT;
+            done = collectRange(this.root, castKey(from), castKey(to),
+                    result, limit) && this.lock.validate(stamp);
+        }
+        if (!done) {
+            result.clear();
+            stamp = this.lock.readLock();
+            try {
+                collectRange(this.root, castKey(from), castKey(to), result,
+                        Integer.MAX_VALUE);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return (List<T>) (List<?>) result;
+    }
+
+    /**
+     * Returns {@code x} viewed as comparable to any label, for
+     * {@link #search}.
+     *
+     * @param x
+     *            the label
+     * @return x
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> castKey(Comparable<?> x) {
+        return (Comparable<Object>) x;
+    }
+
+    /**
+     * Iterator over an array of labels taken in order under the read lock.
+     */
+    private final class SnapshotIterator implements Iterator<T> {
+
+        /**
+         * The labels, in order.
+         */
+        private final Object[] labels;
+
+        /**
+         * Position of the next label.
+         */
+        private int next;
+
+        /**
+         * Constructor.
+         *
+         * @param labels
+         *            the labels, in order
+         */
+        SnapshotIterator(Object[] labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < this.labels.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T label = (T) this.labels[this.next];
+            this.next++;
+            return label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,519 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a persistent height-balanced AVL binary search
+ * tree of immutable nodes. Updates copy only the O(log n) nodes on the path
+ * they touch and share the rest of the tree, so {@link #snapshot()} is O(1)
+ * and an iterator keeps walking the version of the set that existed when it
+ * was created, whatever updates follow, without blocking or copying.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [for every node n of tree, the heights of the left and right subtrees of
+ *   n differ by at most one, n.height is the height of the subtree rooted
+ *   at n, and n.size is the number of nodes of that subtree]
+ * </pre>
+ * @convention IS_BST($this.root) and IS_AVL($this.root)
+ * @correspondence this = labels($this.root)
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public class Set3p<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Immutable node of the AVL tree, possibly shared by several versions of
+     * the set.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of {@code this}.
+         */
+        private final T label;
+
+        /**
+         * Left subtree, or null if empty.
+         */
+        private final Node<T> left;
+
+        /**
+         * Right subtree, or null if empty.
+         */
+        private final Node<T> right;
+
+        /**
+         * Height of the subtree rooted at {@code this}.
+         */
+        private final int height;
+
+        /**
+         * Number of nodes in the subtree rooted at {@code this}.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param label
+         *            the label of the new node
+         * @param left
+         *            the left subtree
+         * @param right
+         *            the right subtree
+         */
+        Node(T label, Node<T> left, Node<T> right) {
+            this.label = label;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+
+    }
+
+    /**
+     * Maximum height of an AVL tree with fewer than 2^31 nodes is 45; the
+     * iterator stack is given some slack beyond that.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Root of the tree of elements included in {@code this}, or null if
+     * {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Returns the height of {@code t}.
+     *
+     * @param t
+     *            the tree, or null for the empty tree
+     * @return the height of t
+     * @ensures height = [height of t]
+     */
+    private static int height(Node<?> t) {
+        int h = 0;
+        if (t != null) {
+            h = t.height;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the number of nodes of {@code t}.
+     *
+     * @param t
+     *            the tree, or null for the empty tree
+     * @return the size of t
+     * @ensures size = |t|
+     */
+    private static int size(Node<?> t) {
+        int n = 0;
+        if (t != null) {
+            n = t.size;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a new AVL tree with label {@code x} between {@code l} and
+     * {@code r}, whose heights differ by at most two, rotating as needed.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param x
+     *            the middle label
+     * @param l
+     *            the tree of smaller labels
+     * @param r
+     *            the tree of larger labels
+     * @return the new tree
+     * @requires <pre>
+     * IS_AVL(l)  and  IS_AVL(r)  and  |height(l) - height(r)| <= 2  and
+     *  [labels(l) < x < labels(r)]
+     * </pre>
+     * @ensures IS_AVL(balance) and labels(balance) = labels(l) union {x}
+     *          union labels(r)
+     */
+    private static <T> Node<T> balance(T x, Node<T> l, Node<T> r) {
+        Node<T> result;
+        int diff = height(l) - height(r);
+        if (diff > 1) {
+            if (height(l.left) >= height(l.right)) {
+                result = new Node<T>(l.label, l.left,
+                        new Node<T>(x, l.right, r));
+            } else {
+                Node<T> lr = l.right;
+                result = new Node<T>(lr.label,
+                        new Node<T>(l.label, l.left, lr.left),
+                        new Node<T>(x, lr.right, r));
+            }
+        } else if (diff < -1) {
+            if (height(r.right) >= height(r.left)) {
+                result = new Node<T>(r.label, new Node<T>(x, l, r.left),
+                        r.right);
+            } else {
+                Node<T> rl = r.left;
+                result = new Node<T>(rl.label, new Node<T>(x, l, rl.left),
+                        new Node<T>(r.label, rl.right, r.right));
+            }
+        } else {
+            result = new Node<T>(x, l, r);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a tree with the labels of {@code t} and {@code x}, sharing the
+     * nodes of {@code t} off the search path.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @param x
+     *            the label to be inserted
+     * @return the new tree
+     * @requires IS_BST(t) and IS_AVL(t) and x is not in labels(t)
+     * @ensures IS_BST(insertInTree) and IS_AVL(insertInTree) and
+     *          labels(insertInTree) = labels(t) union {x}
+     */
+    private static <T extends Comparable<T>> Node<T> insertInTree(Node<T> t,
+            T x) {
+        Node<T> result;
+        if (t == null) {
+            result = new Node<T>(x, null, null);
+        } else if (x.compareTo(t.label) < 0) {
+            result = balance(t.label, insertInTree(t.left, x), t.right);
+        } else {
+            result = balance(t.label, t.left, insertInTree(t.right, x));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a tree with the labels of {@code t} but the smallest, sharing
+     * the nodes of {@code t} off the search path.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @return the new tree
+     * @requires IS_BST(t) and IS_AVL(t) and t /= null
+     * @ensures <pre>
+     * IS_BST(removeSmallest)  and  IS_AVL(removeSmallest)  and
+     *  labels(removeSmallest) = labels(t) \ {[the smallest label in t]}
+     * </pre>
+     */
+    private static <T> Node<T> removeSmallest(Node<T> t) {
+        Node<T> result;
+        if (t.left == null) {
+            result = t.right;
+        } else {
+            result = balance(t.label, removeSmallest(t.left), t.right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smallest label in {@code t}.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @return the smallest label
+     * @requires t /= null
+     */
+    private static <T> T smallest(Node<T> t) {
+        Node<T> n = t;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.label;
+    }
+
+    /**
+     * Returns a tree with the labels of {@code t} but {@code x}, sharing the
+     * nodes of {@code t} off the search path.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @param x
+     *            the label to be removed
+     * @return the new tree
+     * @requires IS_BST(t) and IS_AVL(t) and x is in labels(t)
+     * @ensures <pre>
+     * IS_BST(removeFromTree)  and  IS_AVL(removeFromTree)  and
+     *  labels(removeFromTree) = labels(t) \ {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> removeFromTree(Node<T> t,
+            T x) {
+        Node<T> result;
+        int c = x.compareTo(t.label);
+        if (c < 0) {
+            result = balance(t.label, removeFromTree(t.left, x), t.right);
+        } else if (c > 0) {
+            result = balance(t.label, t.left, removeFromTree(t.right, x));
+        } else if (t.left == null) {
+            result = t.right;
+        } else if (t.right == null) {
+            result = t.left;
+        } else {
+            result = balance(smallest(t.right), t.left,
+                    removeSmallest(t.right));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node of {@code t} whose label is {@code x}, or null if
+     * there is none.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the label to be searched for
+     * @return the node labeled x, or null
+     * @requires IS_BST(t)
+     */
+    private static <T extends Comparable<T>> Node<T> findInTree(Node<T> t,
+            T x) {
+        Node<T> n = t;
+        int c = -1;
+        while (n != null && c != 0) {
+            c = x.compareTo(n.label);
+            if (c < 0) {
+                n = n.left;
+            } else if (c > 0) {
+                n = n.right;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * In-order iterator over the labels of one version of the tree.
+     *
+     * @param <T>
+     *            type of the labels
+     */
+    private static final class Set3pIterator<T> implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited.
+         */
+        @SuppressWarnings("unchecked")
+        private final Node<T>[] stack = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+
+        /**
+         * Number of nodes on the stack.
+         */
+        private int top;
+
+        /**
+         * Constructor.
+         *
+         * @param root
+         *            the root of the version to iterate over
+         */
+        Set3pIterator(Node<T> root) {
+            this.pushLeftSpine(root);
+        }
+
+        /**
+         * Pushes {@code t} and all its left descendants on the stack.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(Node<T> t) {
+            Node<T> n = t;
+            while (n != null) {
+                this.stack[this.top] = n;
+                this.top++;
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.top > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.top--;
+            Node<T> n = this.stack[this.top];
+            this.stack[this.top] = null;
+            this.pushLeftSpine(n.right);
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3p() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3p<?> : ""
+                + "Violation of: source is of dynamic type Set3p<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3p<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3p<T> localSource = (Set3p<T>) source;
+        this.root = localSource.root;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.root = insertInTree(this.root, x);
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        T label = findInTree(this.root, x).label;
+        this.root = removeFromTree(this.root, x);
+        return label;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        T label = smallest(this.root);
+        this.root = removeSmallest(this.root);
+        return label;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return findInTree(this.root, x) != null;
+    }
+
+    @Override
+    public final int size() {
+        return size(this.root);
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3pIterator<T>(this.root);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Returns a new set with the same elements as {@code this}, sharing its
+     * whole tree, in O(1) time. Later updates to either set do not affect the
+     * other.
+     *
+     * @return the snapshot
+     * @ensures snapshot = this
+     */
+    public final Set3p<T> snapshot() {
+        Set3p<T> result = (Set3p<T>) this.newInstance();
+        result.root = this.root;
+        return result;
+    }
+
+}
@@ -0,0 +1,521 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a self-adjusting (splay) binary search tree of
+ * elements with implementations of primary methods. Every operation, including
+ * {@code contains}, moves the element it reaches to the root by splaying, so
+ * recently used elements stay near the root and each operation takes
+ * amortized O(log n) time. This suits skewed access patterns, where a few hot
+ * elements take most of the lookups; a single operation may take O(n) time.
+ *
+ * <p>
+ * Since {@code contains} restructures the tree, an iterator notices when the
+ * tree has been splayed since its last step and finds its place again by
+ * searching, without splaying, for the label it returned last; so
+ * {@code contains} may be called on {@code this} while one of its iterators
+ * is in use, and the iteration still visits each element once, in order.
+ * </p>
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ * </pre>
+ * @convention IS_BST($this.root) and $this.size = |labels($this.root)|
+ * @correspondence this = labels($this.root)
+ *
+ * @author Zheyuan Gao
+ * @author Cedric Fausey
+ *
+ */
+public class Set3s<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the splay tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of {@code this}.
+         */
+        private T label;
+
+        /**
+         * Left subtree, or null if empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Right subtree, or null if empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Constructor of a leaf.
+         *
+         * @param label
+         *            the label
+         */
+        Node(T label) {
+            this.label = label;
+        }
+
+    }
+
+    /**
+     * Root of the tree, or null if it is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of nodes of the tree.
+     */
+    private int size;
+
+    /**
+     * Number of times the shape of the tree has changed, which makes the
+     * iterators find their place again.
+     */
+    private int shapeChanges;
+
+    /**
+     * Splays {@code t} so that its largest label is at the root, which then
+     * has no right subtree, and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree to splay
+     * @return the new root
+     * @requires IS_BST(t) and t /= null
+     * @ensures <pre>
+     * IS_BST(splayMax)  and  labels(splayMax) = labels(t)  and
+     *  splayMax.right = null
+     * </pre>
+     */
+    private static <T> Node<T> splayMax(Node<T> t) {
+        /*
+         * Top-down splay towards the right end: no comparisons are needed,
+         * and every node passed is smaller than the final root.
+         */
+        Node<T> header = new Node<T>(null);
+        Node<T> leftMax = header;
+        Node<T> n = t;
+        while (n.right != null) {
+            Node<T> r = n.right;
+            if (r.right != null) {
+                /*
+                 * Zag-zag: rotate left first.
+                 */
+                n.right = r.left;
+                r.left = n;
+                n = r;
+                r = n.right;
+            }
+            leftMax.right = n;
+            leftMax = n;
+            n = r;
+        }
+        leftMax.right = n.left;
+        n.left = header.right;
+        return n;
+    }
+
+    /**
+     * Removes the root of {@code t} and returns the new root.
+     *
+     * @param <T>
+     *            type of the labels
+     * @param t
+     *            the tree
+     * @return the new root
+     * @requires IS_BST(t) and t /= null
+     * @ensures IS_BST(removeRoot) and labels(removeRoot) = labels(t) \
+     *          {t.label}
+     */
+    private static <T> Node<T> removeRoot(Node<T> t) {
+        Node<T> result;
+        if (t.left == null) {
+            result = t.right;
+        } else {
+            result = splayMax(t.left);
+            result.right = t.right;
+        }
+        return result;
+    }
+
+    /**
+     * In-order iterator over the labels of the tree of {@code this}.
+     */
+    private final class Set3sIterator implements Iterator<T> {
+
+        /**
+         * Initial capacity of the stack; splay trees have no height bound,
+         * so it grows as needed.
+         */
+        private static final int INITIAL_CAPACITY = 32;
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited.
+         */
+        @SuppressWarnings("unchecked")
+        private Node<T>[] stack = (Node<T>[]) new Node<?>[INITIAL_CAPACITY];
+
+        /**
+         * Number of nodes on the stack.
+         */
+        private int top;
+
+        /**
+         * Label returned last, or null before the first call to next.
+         */
+        private T last;
+
+        /**
+         * Value of Set3s.this.shapeChanges when the stack was filled.
+         */
+        private int expectedShapeChanges;
+
+        /**
+         * No-argument constructor.
+         */
+        Set3sIterator() {
+            this.pushLeftSpine(Set3s.this.root);
+            this.expectedShapeChanges = Set3s.this.shapeChanges;
+        }
+
+        /**
+         * Pushes {@code n} on the stack.
+         *
+         * @param n
+         *            the node
+         */
+        private void push(Node<T> n) {
+            if (this.top == this.stack.length) {
+                this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+            }
+            this.stack[this.top] = n;
+            this.top++;
+        }
+
+        /**
+         * Pushes {@code t} and all its left descendants on the stack.
+         *
+         * @param t
+         *            the subtree to descend
+         */
+        private void pushLeftSpine(Node<T> t) {
+            Node<T> n = t;
+            while (n != null) {
+                this.push(n);
+                n = n.left;
+            }
+        }
+
+        /**
+         * Refills the stack if the tree has changed shape since it was
+         * filled: it then holds the nodes on the search path for
+         * {@code this.last} whose labels are greater, found without
+         * splaying.
+         */
+        private void resync() {
+            if (this.expectedShapeChanges != Set3s.this.shapeChanges) {
+                Arrays.fill(this.stack, 0, this.top, null);
+                this.top = 0;
+                if (this.last == null) {
+                    this.pushLeftSpine(Set3s.this.root);
+                } else {
+                    Node<T> n = Set3s.this.root;
+                    while (n != null) {
+                        if (this.last.compareTo(n.label) < 0) {
+                            this.push(n);
+                            n = n.left;
+                        } else {
+                            n = n.right;
+                        }
+                    }
+                }
+                this.expectedShapeChanges = Set3s.this.shapeChanges;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            this.resync();
+            return this.top > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.top--;
+            Node<T> n = this.stack[this.top];
+            this.stack[this.top] = null;
+            this.pushLeftSpine(n.right);
+            this.last = n.label;
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+    /**
+     * Splays the tree of {@code this} around {@code x}: brings to the root
+     * the node labeled {@code x} if there is one, or else the last node on
+     * the search path for {@code x}. The splay is done top-down, in a single
+     * pass comparing {@code x} once with each node on the path.
+     *
+     * @param x
+     *            the label to be searched for
+     * @return the result of comparing x with the label of the new root
+     * @updates this.root
+     * @requires this.root /= null
+     * @ensures <pre>
+     * IS_BST(this.root)  and  labels(this.root) = labels(#this.root)  and
+     *  [this.root is labeled x if x is in labels(#this.root), or else by
+     *   the last label on the search path for x in #this.root]  and
+     *  splay = x.compareTo(this.root.label)
+     * </pre>
+     */
+    private int splay(T x) {
+        /*
+         * header.right collects the tree of labels smaller than the current
+         * node (with leftMax its largest node), and header.left the tree of
+         * labels greater than it (with rightMin its smallest node).
+         */
+        Node<T> header = new Node<T>(null);
+        Node<T> leftMax = header;
+        Node<T> rightMin = header;
+        Node<T> n = this.root;
+        int c = x.compareTo(n.label);
+        boolean done = false;
+        while (!done) {
+            if (c < 0 && n.left != null) {
+                Node<T> l = n.left;
+                int cl = x.compareTo(l.label);
+                if (cl < 0 && l.left != null) {
+                    /*
+                     * Zig-zig: rotate right, then link l into the tree of
+                     * greater labels.
+                     */
+                    n.left = l.right;
+                    l.right = n;
+                    rightMin.left = l;
+                    rightMin = l;
+                    n = l.left;
+                    c = x.compareTo(n.label);
+                } else {
+                    /*
+                     * Zig (or the first half of zig-zag): link n into the
+                     * tree of greater labels.
+                     */
+                    rightMin.left = n;
+                    rightMin = n;
+                    n = l;
+                    c = cl;
+                }
+            } else if (c > 0 && n.right != null) {
+                Node<T> r = n.right;
+                int cr = x.compareTo(r.label);
+                if (cr > 0 && r.right != null) {
+                    /*
+                     * Zag-zag: rotate left, then link r into the tree of
+                     * smaller labels.
+                     */
+                    n.right = r.left;
+                    r.left = n;
+                    leftMax.right = r;
+                    leftMax = r;
+                    n = r.right;
+                    c = x.compareTo(n.label);
+                } else {
+                    /*
+                     * Zag (or the first half of zag-zig): link n into the
+                     * tree of smaller labels.
+                     */
+                    leftMax.right = n;
+                    leftMax = n;
+                    n = r;
+                    c = cr;
+                }
+            } else {
+                done = true;
+            }
+        }
+        /*
+         * Reassemble: the subtrees of n go to the ends of the two collected
+         * trees, which become the subtrees of n.
+         */
+        leftMax.right = n.left;
+        rightMin.left = n.right;
+        n.left = header.right;
+        n.right = header.left;
+        this.root = n;
+        this.shapeChanges++;
+        return c;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+        this.shapeChanges++;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3s() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3s<?> : ""
+                + "Violation of: source is of dynamic type Set3s<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3s<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3s<T> localSource = (Set3s<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        this.shapeChanges++;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        Node<T> n = new Node<T>(x);
+        if (this.root != null) {
+            /*
+             * After splaying, the root is the neighbor of x in the tree, and
+             * x becomes the new root with the root on one side.
+             */
+            int c = this.splay(x);
+            Node<T> t = this.root;
+            if (c < 0) {
+                n.left = t.left;
+                n.right = t;
+                t.left = null;
+            } else {
+                n.right = t.right;
+                n.left = t;
+                t.right = null;
+            }
+        }
+        this.root = n;
+        this.size++;
+        this.shapeChanges++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        this.splay(x);
+        T label = this.root.label;
+        this.root = removeRoot(this.root);
+        this.size--;
+        this.shapeChanges++;
+        return label;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * The root is found without any search.
+         */
+        T label = this.root.label;
+        this.root = removeRoot(this.root);
+        this.size--;
+        this.shapeChanges++;
+        return label;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.root != null && this.splay(x) == 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3sIterator();
+    }
+
+}
@@ -0,0 +1,182 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code DurableSet3}.
+ */
+public class DurableSet3Test {
+
+    /**
+     * Directory of the set under test.
+     */
+    private Path directory;
+
+    /**
+     * Creates the directory.
+     *
+     * @throws IOException
+     *             if it cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("DurableSet3Test");
+    }
+
+    /**
+     * Deletes the directory and its contents.
+     *
+     * @throws IOException
+     *             if it cannot be deleted
+     */
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Test for recovery from the log alone.
+     *
+     * @throws IOException
+     *             if the files cannot be used
+     */
+    @Test
+    public void testReopenFromLog() throws IOException {
+        try (DurableSet3<String> s = DurableSet3.open(this.directory,
+                Set3aCodec.strings())) {
+            s.add("b");
+            s.add("a");
+            s.add("c");
+            assertEquals("b", s.remove("b"));
+        }
+        try (DurableSet3<String> s = DurableSet3.open(this.directory,
+                Set3aCodec.strings())) {
+            assertEquals(2, s.size());
+            assertEquals(true, s.contains("a"));
+            assertEquals(false, s.contains("b"));
+            assertEquals(true, s.contains("c"));
+        }
+    }
+
+    /**
+     * Test for recovery from checkpoints and the log, with a small
+     * checkpoint size forcing several checkpoints.
+     *
+     * @throws IOException
+     *             if the files cannot be used
+     */
+    @Test
+    public void testReopenAfterCheckpoints() throws IOException {
+        final int n = 10000;
+        Integer removed;
+        try (DurableSet3<Integer> s = DurableSet3.open(this.directory,
+                Set3aCodec.integers(), 4096, 1000, 16384)) {
+            for (int i = 0; i < n; i++) {
+                s.add(i);
+            }
+            for (int i = 0; i < n; i += 3) {
+                s.remove(i);
+            }
+            removed = s.removeAny();
+        }
+        try (DurableSet3<Integer> s = DurableSet3.open(this.directory,
+                Set3aCodec.integers())) {
+            int expected = n - (n + 2) / 3 - 1;
+            assertEquals(expected, s.size());
+            assertEquals(false, s.contains(3));
+            assertEquals(false, s.contains(removed));
+            assertEquals(!removed.equals(n - 2), s.contains(n - 2));
+        }
+    }
+
+    /**
+     * Test for recovery from a log with a torn last record.
+     *
+     * @throws IOException
+     *             if the files cannot be used
+     */
+    @Test
+    public void testTornLog() throws IOException {
+        try (DurableSet3<Long> s = DurableSet3.open(this.directory,
+                Set3aCodec.longs())) {
+            s.add(1L);
+            s.add(2L);
+        }
+        try (FileChannel log = FileChannel.open(this.directory.resolve("log"),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 9, 1, 2 }));
+        }
+        try (DurableSet3<Long> s = DurableSet3.open(this.directory,
+                Set3aCodec.longs())) {
+            assertEquals(2, s.size());
+            s.add(3L);
+        }
+        try (DurableSet3<Long> s = DurableSet3.open(this.directory,
+                Set3aCodec.longs())) {
+            assertEquals(3, s.size());
+            assertEquals(true, s.contains(3L));
+        }
+    }
+
+    /**
+     * Test that the records of an idle set reach the log file within about
+     * the sync interval, with no later update or sync to push them out.
+     *
+     * @throws IOException
+     *             if the files cannot be used
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testIdleSync() throws IOException, InterruptedException {
+        final long intervalMillis = 20;
+        final long timeoutMillis = 2000;
+        /*
+         * Length, checksum, operation byte and an 8-byte long.
+         */
+        final long recordBytes = 4 + 4 + 1 + 8;
+        Path log = this.directory.resolve("log");
+        try (DurableSet3<Long> s = DurableSet3.open(this.directory,
+                Set3aCodec.longs(), 1 << 20, intervalMillis, 1 << 20)) {
+            s.add(1L);
+            s.add(2L);
+            long deadline = System.nanoTime() + timeoutMillis * 1000000;
+            while (Files.size(log) < 2 * recordBytes
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(intervalMillis / 2);
+            }
+            assertEquals(2 * recordBytes, Files.size(log));
+            /*
+             * Copy the synced log while the set is still open, and recover
+             * from the copy alone.
+             */
+            Path copy = Files.createDirectory(this.directory.resolve("copy"));
+            Files.copy(log, copy.resolve("log"));
+            try (DurableSet3<Long> t = DurableSet3.open(copy,
+                    Set3aCodec.longs())) {
+                assertEquals(2, t.size());
+                assertEquals(true, t.contains(2L));
+            }
+        }
+    }
+
+}
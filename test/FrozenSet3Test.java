@@ -0,0 +1,72 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code FrozenSet3}, checked against the
+ * {@code Set3a} it is made from.
+ */
+public class FrozenSet3Test {
+
+    /**
+     * Test for toFrozen on strings.
+     */
+    @Test
+    public void testStrings() {
+        Set3a<String> s = new Set3a<String>();
+        s.add("pear");
+        s.add("apple");
+        s.add("fig");
+        s.add("banana");
+        FrozenSet3<String> f = s.toFrozen();
+        assertEquals(4, f.size());
+        assertEquals("{apple,banana,fig,pear}", f.toString());
+        assertEquals(true, f.contains("fig"));
+        assertEquals(false, f.contains("cherry"));
+        assertEquals(false, f.contains("zucchini"));
+        s.add("cherry");
+        assertEquals(false, f.contains("cherry"));
+    }
+
+    /**
+     * Test for contains and iteration, for every size up to a few complete
+     * trees, probing each element and each gap between elements.
+     */
+    @Test
+    public void testAllSizes() {
+        final int n = 70;
+        Set3a<Integer> s = new Set3a<Integer>();
+        for (int size = 0; size <= n; size++) {
+            FrozenSet3<Integer> f = s.toFrozen();
+            assertEquals(size, f.size());
+            for (int i = -1; i <= 2 * size; i++) {
+                assertEquals(i >= 0 && i % 2 == 0 && i < 2 * size,
+                        f.contains(i));
+            }
+            Iterator<Integer> it = f.iterator();
+            for (int i = 0; i < size; i++) {
+                assertEquals(Integer.valueOf(2 * i), it.next());
+            }
+            assertEquals(false, it.hasNext());
+            s.add(2 * size);
+        }
+    }
+
+    /**
+     * Test for equals and hashCode.
+     */
+    @Test
+    public void testEquals() {
+        Set3a<Integer> s = new Set3a<Integer>();
+        Set3a<Integer> t = new Set3a<Integer>();
+        for (int i = 0; i < 10; i++) {
+            s.add(i);
+            t.add(9 - i);
+        }
+        assertEquals(s.toFrozen(), t.toFrozen());
+        assertEquals(s.toFrozen().hashCode(), t.toFrozen().hashCode());
+    }
+
+}
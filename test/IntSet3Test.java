@@ -0,0 +1,147 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for {@code IntSet3}, checked against a
+ * {@code Set1L<Integer>} reference.
+ */
+public class IntSet3Test {
+
+    /**
+     * Returns a {@code Set1L<Integer>} with the same elements as {@code s}.
+     *
+     * @param s
+     *            the set to copy
+     * @return the reference set
+     * @ensures toRef = s
+     */
+    private static Set<Integer> toRef(IntSet3 s) {
+        Set<Integer> result = new Set1L<Integer>();
+        PrimitiveIterator.OfInt it = s.iterator();
+        while (it.hasNext()) {
+            result.add(it.nextInt());
+        }
+        return result;
+    }
+
+    /**
+     * Test for constructor.
+     */
+    @Test
+    public void testConstructor() {
+        IntSet3 s = new IntSet3();
+        assertEquals(0, s.size());
+        assertEquals("{}", s.toString());
+    }
+
+    /**
+     * Test for add and contains routine case.
+     */
+    @Test
+    public void testAddContainsRoutine() {
+        IntSet3 s = new IntSet3();
+        s.add(5);
+        s.add(-3);
+        s.add(12);
+        Set<Integer> sExpected = new Set1L<Integer>();
+        sExpected.add(5);
+        sExpected.add(-3);
+        sExpected.add(12);
+        assertEquals(sExpected, toRef(s));
+        assertEquals(true, s.contains(-3));
+        assertEquals(false, s.contains(4));
+        assertEquals("{-3,5,12}", s.toString());
+    }
+
+    /**
+     * Test for remove and removeAny routine case.
+     */
+    @Test
+    public void testRemoveRoutine() {
+        IntSet3 s = new IntSet3();
+        for (int i = 0; i < 10; i++) {
+            s.add(i);
+        }
+        assertEquals(4, s.remove(4));
+        assertEquals(0, s.removeAny());
+        Set<Integer> sExpected = new Set1L<Integer>();
+        for (int i = 1; i < 10; i++) {
+            if (i != 4) {
+                sExpected.add(i);
+            }
+        }
+        assertEquals(sExpected, toRef(s));
+    }
+
+    /**
+     * Test for add, remove and iteration with many sorted elements.
+     */
+    @Test
+    public void testLarge() {
+        final int n = 100000;
+        IntSet3 s = new IntSet3();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        for (int i = 0; i < n; i += 2) {
+            s.remove(i);
+        }
+        assertEquals(n / 2, s.size());
+        int expected = 1;
+        PrimitiveIterator.OfInt it = s.iterator();
+        while (it.hasNext()) {
+            assertEquals(expected, it.nextInt());
+            expected += 2;
+        }
+        assertEquals(n + 1, expected);
+    }
+
+    /**
+     * Test for equals and transferFrom.
+     */
+    @Test
+    public void testEqualsTransferFrom() {
+        IntSet3 s = new IntSet3();
+        IntSet3 t = new IntSet3();
+        s.add(2);
+        s.add(1);
+        t.add(1);
+        t.add(2);
+        assertEquals(s, t);
+        IntSet3 u = new IntSet3();
+        u.transferFrom(s);
+        assertEquals(0, s.size());
+        assertEquals(t, u);
+    }
+
+    /**
+     * Test for toFrozen, for every size up to a few complete trees.
+     */
+    @Test
+    public void testToFrozen() {
+        final int n = 70;
+        IntSet3 s = new IntSet3();
+        for (int size = 0; size <= n; size++) {
+            FrozenIntSet3 f = s.toFrozen();
+            assertEquals(size, f.size());
+            assertEquals(s.toString(), f.toString());
+            for (int i = -1; i <= 2 * size; i++) {
+                assertEquals(s.contains(i), f.contains(i));
+            }
+            PrimitiveIterator.OfInt it = f.iterator();
+            for (int i = 0; i < size; i++) {
+                assertEquals(2 * i, it.nextInt());
+            }
+            assertEquals(false, it.hasNext());
+            s.add(2 * size);
+        }
+        assertEquals(s.toFrozen(), s.toFrozen());
+    }
+
+}
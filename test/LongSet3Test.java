@@ -0,0 +1,147 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for {@code LongSet3}, checked against a
+ * {@code Set1L<Long>} reference.
+ */
+public class LongSet3Test {
+
+    /**
+     * Returns a {@code Set1L<Long>} with the same elements as {@code s}.
+     *
+     * @param s
+     *            the set to copy
+     * @return the reference set
+     * @ensures toRef = s
+     */
+    private static Set<Long> toRef(LongSet3 s) {
+        Set<Long> result = new Set1L<Long>();
+        PrimitiveIterator.OfLong it = s.iterator();
+        while (it.hasNext()) {
+            result.add(it.nextLong());
+        }
+        return result;
+    }
+
+    /**
+     * Test for constructor.
+     */
+    @Test
+    public void testConstructor() {
+        LongSet3 s = new LongSet3();
+        assertEquals(0, s.size());
+        assertEquals("{}", s.toString());
+    }
+
+    /**
+     * Test for add and contains routine case.
+     */
+    @Test
+    public void testAddContainsRoutine() {
+        LongSet3 s = new LongSet3();
+        s.add(5L);
+        s.add(-3L);
+        s.add(12L);
+        Set<Long> sExpected = new Set1L<Long>();
+        sExpected.add(5L);
+        sExpected.add(-3L);
+        sExpected.add(12L);
+        assertEquals(sExpected, toRef(s));
+        assertEquals(true, s.contains(-3L));
+        assertEquals(false, s.contains(4L));
+        assertEquals("{-3,5,12}", s.toString());
+    }
+
+    /**
+     * Test for remove and removeAny routine case.
+     */
+    @Test
+    public void testRemoveRoutine() {
+        LongSet3 s = new LongSet3();
+        for (int i = 0; i < 10; i++) {
+            s.add(i);
+        }
+        assertEquals(4L, s.remove(4L));
+        assertEquals(0L, s.removeAny());
+        Set<Long> sExpected = new Set1L<Long>();
+        for (int i = 1; i < 10; i++) {
+            if (i != 4) {
+                sExpected.add((long) i);
+            }
+        }
+        assertEquals(sExpected, toRef(s));
+    }
+
+    /**
+     * Test for add, remove and iteration with many sorted elements.
+     */
+    @Test
+    public void testLarge() {
+        final int n = 100000;
+        LongSet3 s = new LongSet3();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        for (int i = 0; i < n; i += 2) {
+            s.remove(i);
+        }
+        assertEquals(n / 2, s.size());
+        long expected = 1;
+        PrimitiveIterator.OfLong it = s.iterator();
+        while (it.hasNext()) {
+            assertEquals(expected, it.nextLong());
+            expected += 2;
+        }
+        assertEquals(n + 1L, expected);
+    }
+
+    /**
+     * Test for equals and transferFrom.
+     */
+    @Test
+    public void testEqualsTransferFrom() {
+        LongSet3 s = new LongSet3();
+        LongSet3 t = new LongSet3();
+        s.add(2L);
+        s.add(1L);
+        t.add(1L);
+        t.add(2L);
+        assertEquals(s, t);
+        LongSet3 u = new LongSet3();
+        u.transferFrom(s);
+        assertEquals(0, s.size());
+        assertEquals(t, u);
+    }
+
+    /**
+     * Test for toFrozen, for every size up to a few complete trees.
+     */
+    @Test
+    public void testToFrozen() {
+        final int n = 70;
+        LongSet3 s = new LongSet3();
+        for (int size = 0; size <= n; size++) {
+            FrozenLongSet3 f = s.toFrozen();
+            assertEquals(size, f.size());
+            assertEquals(s.toString(), f.toString());
+            for (int i = -1; i <= 2 * size; i++) {
+                assertEquals(s.contains(i), f.contains(i));
+            }
+            PrimitiveIterator.OfLong it = f.iterator();
+            for (int i = 0; i < size; i++) {
+                assertEquals(2 * i, it.nextLong());
+            }
+            assertEquals(false, it.hasNext());
+            s.add(2 * size);
+        }
+        assertEquals(s.toFrozen(), s.toFrozen());
+    }
+
+}
@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code OffHeapSet3}.
+ */
+public class OffHeapSet3Test {
+
+    /**
+     * Returns {@code i} as an 8-byte big-endian key.
+     *
+     * @param i
+     *            the number
+     * @return the key
+     */
+    private static byte[] key(long i) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(i).array();
+    }
+
+    /**
+     * Test for add, contains, remove and removeAny routine case.
+     */
+    @Test
+    public void testKernelRoutine() {
+        OffHeapSet3 s = new OffHeapSet3(Long.BYTES);
+        s.add(key(5));
+        s.add(key(1));
+        s.add(key(9));
+        assertEquals(3, s.size());
+        assertEquals(true, s.contains(key(9)));
+        assertEquals(false, s.contains(key(4)));
+        assertEquals(true, Arrays.equals(key(5), s.remove(key(5))));
+        assertEquals(true, Arrays.equals(key(1), s.removeAny()));
+        assertEquals(1, s.size());
+        assertEquals(true, s.contains(key(9)));
+    }
+
+    /**
+     * Test for unsigned ordering of 16-byte keys.
+     */
+    @Test
+    public void testWideKeysOrder() {
+        OffHeapSet3 s = new OffHeapSet3(2 * Long.BYTES);
+        byte[] small = new byte[2 * Long.BYTES];
+        byte[] large = new byte[2 * Long.BYTES];
+        small[2 * Long.BYTES - 1] = 1;
+        large[0] = (byte) 0xFF;
+        s.add(large);
+        s.add(small);
+        Iterator<byte[]> it = s.iterator();
+        assertEquals(true, Arrays.equals(small, it.next()));
+        assertEquals(true, Arrays.equals(large, it.next()));
+        assertEquals(false, it.hasNext());
+    }
+
+    /**
+     * Test for a set spanning several chunks, inserted in increasing order.
+     */
+    @Test
+    public void testLarge() {
+        final int n = 200000;
+        OffHeapSet3 s = new OffHeapSet3(Long.BYTES);
+        for (int i = 0; i < n; i++) {
+            s.add(key(i));
+        }
+        for (int i = 0; i < n; i += 2) {
+            s.remove(key(i));
+        }
+        assertEquals(n / 2, s.size());
+        long expected = 1;
+        for (byte[] x : s) {
+            assertEquals(true, Arrays.equals(key(expected), x));
+            expected += 2;
+        }
+    }
+
+    /**
+     * Test for reopening a file-backed set.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be used
+     */
+    @Test
+    public void testReopen() throws IOException {
+        final int n = 100000;
+        Path file = Files.createTempFile("OffHeapSet3Test", ".set");
+        try {
+            Files.delete(file);
+            try (OffHeapSet3 s = OffHeapSet3.open(file, Long.BYTES)) {
+                for (int i = 0; i < n; i++) {
+                    s.add(key(i));
+                }
+                s.remove(key(7));
+            }
+            try (OffHeapSet3 s = OffHeapSet3.open(file, Long.BYTES)) {
+                assertEquals(n - 1, s.size());
+                assertEquals(false, s.contains(key(7)));
+                assertEquals(true, s.contains(key(n - 1)));
+                s.add(key(n));
+                assertEquals(n, s.size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -1,3 +1,31 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
 import components.set.Set;
 import components.set.Set1L;
 
@@ -16,4 +44,830 @@ public class Set3aTest extends SetTest {
         return new Set1L<String>();
     }
 
+    /**
+     * Returns the zero-padded decimal representation of {@code i}, so that
+     * the ordering of the results matches the ordering of the integers.
+     *
+     * @param i
+     *            the integer to convert
+     * @return the padded string
+     * @requires 0 <= i < 10^8
+     * @ensures key = [i as an 8-digit decimal string]
+     */
+    private static String key(int i) {
+        return String.format("%08d", i);
+    }
+
+    /**
+     * Test for add with a large number of elements inserted in increasing
+     * order (degenerate case for an unbalanced binary search tree).
+     */
+    @Test
+    public void testAddSortedLarge() {
+        final int n = 100000;
+        Set<String> s = this.constructorTest();
+        for (int i = 0; i < n; i++) {
+            s.add(key(i));
+        }
+        assertEquals(n, s.size());
+        assertEquals(true, s.contains(key(0)));
+        assertEquals(true, s.contains(key(n - 1)));
+        assertEquals(false, s.contains(key(n)));
+        for (int i = n - 1; i >= 0; i -= 2) {
+            assertEquals(key(i), s.remove(key(i)));
+        }
+        assertEquals(n / 2, s.size());
+        assertEquals(false, s.contains(key(n - 1)));
+        assertEquals(true, s.contains(key(n - 2)));
+    }
+
+    /**
+     * Test for iterator visiting elements in increasing order.
+     */
+    @Test
+    public void testIteratorOrder() {
+        Set<String> s = this.constructorTest();
+        for (int i = 9; i >= 0; i--) {
+            s.add(key(i));
+        }
+        int i = 0;
+        for (String x : s) {
+            assertEquals(key(i), x);
+            i++;
+        }
+        assertEquals(10, i);
+    }
+
+    /**
+     * Test for fromSorted with an empty array.
+     */
+    @Test
+    public void testFromSortedEmpty() {
+        Set<String> s = Set3a.fromSorted(new String[0]);
+        Set<String> sExpected = this.constructorRef();
+        assertEquals(sExpected, s);
+    }
+
+    /**
+     * Test for fromSorted with an array.
+     */
+    @Test
+    public void testFromSortedArray() {
+        Set<String> s = Set3a.fromSorted("apple", "beer", "chair", "door");
+        Set<String> sExpected = this.constructorRef();
+        sExpected.add("apple");
+        sExpected.add("beer");
+        sExpected.add("chair");
+        sExpected.add("door");
+        assertEquals(sExpected, s);
+    }
+
+    /**
+     * Test for fromSorted with a large stream, followed by kernel updates.
+     */
+    @Test
+    public void testFromSortedStreamLarge() {
+        final int n = 100000;
+        Set<String> s = Set3a
+                .fromSorted(IntStream.range(0, n).mapToObj(i -> key(i)));
+        assertEquals(n, s.size());
+        s.add(key(n));
+        assertEquals(key(0), s.remove(key(0)));
+        assertEquals(key(n / 2), s.remove(key(n / 2)));
+        assertEquals(n - 1, s.size());
+        int i = 1;
+        for (String x : s) {
+            if (i == n / 2) {
+                i++;
+            }
+            assertEquals(key(i), x);
+            i++;
+        }
+    }
+
+    /**
+     * Creates and returns a {@code Set3a<String>} with the given entries.
+     *
+     * @param args
+     *            the entries for the set
+     * @return the constructed set
+     * @requires [every entry in args is unique]
+     * @ensures createSet3a = [entries in args]
+     */
+    private static Set3a<String> createSet3a(String... args) {
+        Set3a<String> set = new Set3a<String>();
+        for (String s : args) {
+            set.add(s);
+        }
+        return set;
+    }
+
+    /**
+     * Test for add(Set) (union) with another Set3a.
+     */
+    @Test
+    public void testAddSet() {
+        Set3a<String> s = createSet3a("a", "c", "e", "g");
+        Set3a<String> t = createSet3a("b", "c", "d", "g", "h");
+        s.add(t);
+        assertEquals(createSet3a("a", "b", "c", "d", "e", "g", "h"), s);
+        assertEquals(createSet3a("c", "g"), t);
+    }
+
+    /**
+     * Test for remove(Set) (difference) with another Set3a.
+     */
+    @Test
+    public void testRemoveSet() {
+        Set3a<String> s = createSet3a("a", "c", "e", "g");
+        Set3a<String> t = createSet3a("b", "c", "d", "g", "h");
+        Set<String> removed = s.remove(t);
+        assertEquals(createSet3a("a", "e"), s);
+        assertEquals(createSet3a("c", "g"), removed);
+        assertEquals(createSet3a("b", "c", "d", "g", "h"), t);
+    }
+
+    /**
+     * Test for intersect with a Set3a and with another Set implementation.
+     */
+    @Test
+    public void testIntersect() {
+        Set3a<String> s = createSet3a("a", "c", "e", "g");
+        Set3a<String> t = createSet3a("b", "c", "d", "g", "h");
+        s.intersect(t);
+        assertEquals(createSet3a("c", "g"), s);
+        assertEquals(createSet3a("b", "c", "d", "g", "h"), t);
+        Set<String> u = this.constructorRef();
+        u.add("g");
+        s.intersect(u);
+        assertEquals(createSet3a("g"), s);
+    }
+
+    /**
+     * Test for symmetricDifference with another Set3a.
+     */
+    @Test
+    public void testSymmetricDifference() {
+        Set3a<String> s = createSet3a("a", "c", "e", "g");
+        Set3a<String> t = createSet3a("b", "c", "d", "g", "h");
+        s.symmetricDifference(t);
+        assertEquals(createSet3a("a", "b", "d", "e", "h"), s);
+        assertEquals(createSet3a("b", "c", "d", "g", "h"), t);
+    }
+
+    /**
+     * Test for the parallel bulk operations, with a small sequential cutoff so
+     * that tasks are actually forked.
+     */
+    @Test
+    public void testParallelLarge() {
+        final int n = 20000;
+        final int cutoff = 64;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        String[] evens = new String[n / 2];
+        String[] all = new String[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = key(i);
+            if (i % 2 == 0) {
+                evens[i / 2] = key(i);
+            }
+        }
+        Set3a<String> s = Set3a.fromSortedParallel(evens, pool, cutoff);
+        Set3a<String> t = Set3a.fromSortedParallel(all, pool, cutoff);
+        Set<String> removed = t.removeParallel(s, pool, cutoff);
+        assertEquals(s, removed);
+        assertEquals(n / 2, t.size());
+        assertEquals(false, t.contains(key(0)));
+        t.addParallel(s, pool, cutoff);
+        assertEquals(Set3a.fromSorted(all), t);
+        assertEquals(0, s.size());
+        t.intersectParallel(Set3a.fromSorted(evens), pool, cutoff);
+        assertEquals(Set3a.fromSorted(evens), t);
+    }
+
+    /**
+     * Test for rank and select.
+     */
+    @Test
+    public void testRankSelect() {
+        final int n = 1000;
+        Set3a<String> s = new Set3a<String>();
+        for (int i = n - 2; i >= 0; i -= 2) {
+            s.add(key(i));
+        }
+        assertEquals(n / 2, s.size());
+        for (int k = 0; k < n / 2; k++) {
+            assertEquals(key(2 * k), s.select(k));
+            assertEquals(k, s.rank(key(2 * k)));
+            assertEquals(k + 1, s.rank(key(2 * k + 1)));
+        }
+        s.remove(key(0));
+        assertEquals(key(2), s.select(0));
+        assertEquals(0, s.rank(key(2)));
+    }
+
+    /**
+     * Test for min, max, floor, lower, ceiling and higher.
+     */
+    @Test
+    public void testNavigation() {
+        Set3a<String> s = createSet3a("b", "d", "f", "h");
+        assertEquals("b", s.min());
+        assertEquals("h", s.max());
+        assertEquals("d", s.floor("d"));
+        assertEquals("d", s.floor("e"));
+        assertEquals(null, s.floor("a"));
+        assertEquals("b", s.lower("d"));
+        assertEquals(null, s.lower("b"));
+        assertEquals("d", s.ceiling("d"));
+        assertEquals("f", s.ceiling("e"));
+        assertEquals(null, s.ceiling("i"));
+        assertEquals("f", s.higher("d"));
+        assertEquals(null, s.higher("h"));
+    }
+
+    /**
+     * Test for subSet, headSet and tailSet views.
+     */
+    @Test
+    public void testRangeViews() {
+        Set3a<String> s = createSet3a("b", "d", "f", "h");
+        StringBuilder sub = new StringBuilder();
+        for (String x : s.subSet("c", "h")) {
+            sub.append(x);
+        }
+        assertEquals("df", sub.toString());
+        StringBuilder head = new StringBuilder();
+        for (String x : s.headSet("d")) {
+            head.append(x);
+        }
+        assertEquals("b", head.toString());
+        Iterable<String> tail = s.tailSet("e");
+        s.add("g");
+        StringBuilder tailString = new StringBuilder();
+        for (String x : tail) {
+            tailString.append(x);
+        }
+        assertEquals("fgh", tailString.toString());
+    }
+
+    /**
+     * Test for addIfAbsent, removeIfPresent and replace.
+     */
+    @Test
+    public void testSinglePassUpdates() {
+        Set3a<String> s = createSet3a("b", "d", "f");
+        assertEquals(true, s.addIfAbsent("c"));
+        assertEquals(false, s.addIfAbsent("d"));
+        assertEquals("d", s.removeIfPresent("d"));
+        assertEquals(null, s.removeIfPresent("d"));
+        assertEquals(createSet3a("b", "c", "f"), s);
+        String f = new String("f");
+        assertEquals("f", s.replace(f));
+        assertEquals(true, s.max() == f);
+        assertEquals(null, s.replace("z"));
+        assertEquals(createSet3a("b", "c", "f"), s);
+        Set3a<String> empty = new Set3a<String>();
+        assertEquals(null, empty.removeIfPresent("a"));
+    }
+
+    /**
+     * Test for addIfAbsent and removeIfPresent on random operations, against
+     * a reference set.
+     */
+    @Test
+    public void testSinglePassUpdatesLarge() {
+        final int n = 2000;
+        Random random = new Random(3);
+        Set3a<String> s = new Set3a<String>();
+        Set<String> expected = new Set1L<String>();
+        for (int i = 0; i < 4 * n; i++) {
+            String x = key(random.nextInt(n));
+            if (random.nextBoolean()) {
+                boolean absent = !expected.contains(x);
+                if (absent) {
+                    expected.add(x);
+                }
+                assertEquals(absent, s.addIfAbsent(x));
+            } else {
+                String removed = null;
+                if (expected.contains(x)) {
+                    removed = expected.remove(x);
+                }
+                assertEquals(removed, s.removeIfPresent(x));
+            }
+        }
+        assertEquals(expected, s);
+    }
+
+    /**
+     * Test for containsEach and containsAll with an unsorted batch holding
+     * duplicates.
+     */
+    @Test
+    public void testContainsEachRoutine() {
+        Set3a<String> s = createSet3a("b", "d", "f", "h");
+        List<String> batch = Arrays.asList("h", "a", "d", "e", "d", "i", "b");
+        BitSet hits = s.containsEach(batch);
+        assertEquals("{0, 2, 4, 6}", hits.toString());
+        assertEquals(false, s.containsAll(batch));
+        assertEquals(true, s.containsAll(Arrays.asList("f", "b", "f")));
+        assertEquals(true, s.containsAll(Arrays.<String>asList()));
+    }
+
+    /**
+     * Test for containsEach on a large set, with random and clustered
+     * batches, against contains.
+     */
+    @Test
+    public void testContainsEachLarge() {
+        final int n = 10000;
+        Set3a<String> s = Set3a.fromSorted(
+                IntStream.range(0, n).mapToObj(i -> key(2 * i)));
+        Random random = new Random(1);
+        List<String> batch = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(key(random.nextInt(2 * n + 2)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            batch.add(key(n + i));
+        }
+        BitSet hits = s.containsEach(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(s.contains(batch.get(i)), hits.get(i));
+        }
+    }
+
+    /**
+     * Test for addAll and removeAll with unsorted batches holding duplicates
+     * and elements already in (or missing from) the set.
+     */
+    @Test
+    public void testAddAllRemoveAllRoutine() {
+        Set3a<String> s = createSet3a("b", "d", "f", "h");
+        assertEquals(3, s.addAll(Arrays.asList("g", "a", "d", "a", "c")));
+        assertEquals(createSet3a("a", "b", "c", "d", "f", "g", "h"), s);
+        assertEquals(2, s.removeAll(Arrays.asList("h", "e", "b", "h")));
+        assertEquals(createSet3a("a", "c", "d", "f", "g"), s);
+        assertEquals(0, s.addAll(Arrays.<String>asList()));
+    }
+
+    /**
+     * Test for addAll and removeAll on a large set, with batches small and
+     * large relative to it, against single adds and removes.
+     */
+    @Test
+    public void testAddAllRemoveAllLarge() {
+        final int n = 20000;
+        Random random = new Random(2);
+        Set3a<String> s = new Set3a<String>();
+        Set<String> expected = new Set1L<String>();
+        for (int batchSize : new int[] { 3000, 100, 50000, 10, 4000 }) {
+            List<String> batch = new ArrayList<String>();
+            int added = 0;
+            for (int i = 0; i < batchSize; i++) {
+                String x = key(random.nextInt(n));
+                batch.add(x);
+                if (!expected.contains(x)) {
+                    expected.add(x);
+                    added++;
+                }
+            }
+            assertEquals(added, s.addAll(batch));
+            assertEquals(expected.size(), s.size());
+            batch.clear();
+            int removed = 0;
+            for (int i = 0; i < batchSize / 2; i++) {
+                String x = key(random.nextInt(n));
+                batch.add(x);
+                if (expected.contains(x)) {
+                    expected.remove(x);
+                    removed++;
+                }
+            }
+            assertEquals(removed, s.removeAll(batch));
+            assertEquals(expected, s);
+        }
+    }
+
+    /**
+     * Test for contains through a Bloom filter, kept up to date by kernel
+     * methods and rebuilt after other changes.
+     */
+    @Test
+    public void testBloomFilter() {
+        final int n = 10000;
+        Set3a<String> s = Set3a.fromSorted(
+                IntStream.range(0, n).mapToObj(i -> key(2 * i)));
+        Set3aBloomFilter filter = s.enableBloomFilter(10);
+        for (int i = 0; i < 2 * n; i++) {
+            assertEquals(i % 2 == 0, s.contains(key(i)));
+        }
+        assertEquals(2 * n, filter.getQueries());
+        assertEquals(n, filter.getHits());
+        assertEquals(true, filter.getFalsePositiveRate() < 0.05);
+        s.add(key(1));
+        s.remove(key(0));
+        s.addIfAbsent(key(3));
+        s.removeIfPresent(key(2));
+        assertEquals(true, s.contains(key(1)) && s.contains(key(3)));
+        assertEquals(false, s.contains(key(0)) || s.contains(key(2)));
+        s.add(createSet3a(key(5), key(7)));
+        s.intersect(createSet3a(key(1), key(4), key(7), key(9)));
+        assertEquals(createSet3a(key(1), key(4), key(7)), s);
+        assertEquals(true, s.contains(key(7)));
+        assertEquals(false, s.contains(key(5)));
+        assertEquals(true, filter.getRebuilds() >= 2);
+        s.disableBloomFilter();
+        assertEquals(true, s.contains(key(4)));
+    }
+
+    /**
+     * Test for removeAny draining a large set, which stays balanced.
+     */
+    @Test
+    public void testRemoveAnyDrainsLarge() {
+        final int n = 1 << 12;
+        Set3a<String> s = Set3a.fromSorted(
+                IntStream.range(0, n).mapToObj(i -> key(i)));
+        Set3aMetrics metrics = s.enableMetrics();
+        Set<String> removed = new Set1L<String>();
+        for (int i = 0; i < n; i++) {
+            removed.add(s.removeAny());
+        }
+        assertEquals(0, s.size());
+        assertEquals(n, removed.size());
+        /*
+         * Every left spine walked is at most the height of an AVL tree of n
+         * nodes, about 1.44 log2(n).
+         */
+        assertEquals(true, metrics.getMaxDepth() <= 18);
+    }
+
+    /**
+     * Test for drainTo and drainSorted.
+     */
+    @Test
+    public void testDrain() {
+        Set3a<String> s = createSet3a("d", "b", "f", "a");
+        StringBuilder drained = new StringBuilder();
+        s.drainTo(drained::append);
+        assertEquals("abdf", drained.toString());
+        assertEquals(0, s.size());
+        assertEquals(new Set3a<String>(), s);
+        assertEquals(0, s.hashCode());
+        s.add("c");
+        s.add("a");
+        assertEquals(Arrays.asList("a", "c"), s.drainSorted());
+        assertEquals(0, s.size());
+        assertEquals(Arrays.<String>asList(), s.drainSorted());
+    }
+
+    /**
+     * Test for the contract of equals and hashCode across implementations:
+     * a {@code Set3a} and a {@code Set1L} with the same elements are equal
+     * both ways and have the same hash code, whether the cached hash of the
+     * {@code Set3a} was kept up to date or recomputed.
+     */
+    @Test
+    public void testEqualsHashCodeAcrossImplementations() {
+        final int n = 50;
+        Set3a<String> s = new Set3a<String>();
+        Set<String> ref = new Set1L<String>();
+        for (int i = 0; i <= n; i++) {
+            assertEquals(true, s.equals(ref));
+            assertEquals(true, ref.equals(s));
+            assertEquals(ref.hashCode(), s.hashCode());
+            s.add(key(i));
+            assertEquals(false, s.equals(ref));
+            assertEquals(false, ref.equals(s));
+            ref.add(key(i));
+        }
+        s.removeAll(Arrays.asList(key(0), key(n)));
+        ref.remove(key(0));
+        ref.remove(key(n));
+        assertEquals(true, s.equals(ref) && ref.equals(s));
+        assertEquals(ref.hashCode(), s.hashCode());
+        Set3a<String> t = Set3a.fromSorted(s.stream());
+        assertEquals(true, t.equals(ref) && ref.equals(t));
+        assertEquals(ref.hashCode(), t.hashCode());
+    }
+
+    /**
+     * Test for equals, hashCode and toString, with the hash code kept up to
+     * date by kernel methods and recomputed after bulk operations.
+     */
+    @Test
+    public void testEqualsHashCodeToString() {
+        Set3a<String> s = createSet3a("c", "a", "b");
+        Set3a<String> t = createSet3a("b", "c", "a");
+        Set<String> ref = new Set1L<String>();
+        ref.add("a");
+        ref.add("b");
+        ref.add("c");
+        assertEquals("{a,b,c}", s.toString());
+        assertEquals(true, s.equals(t) && t.equals(s) && s.equals(ref));
+        assertEquals(ref.hashCode(), s.hashCode());
+        s.add("d");
+        s.remove("a");
+        s.removeAny();
+        s.addIfAbsent("e");
+        s.removeIfPresent("e");
+        s.replace(new String("d"));
+        int hash = s.hashCode();
+        assertEquals(Set3a.fromSorted(s.stream()).hashCode(), hash);
+        assertEquals(false, s.equals(t));
+        s.add(createSet3a("a", "b", "c", "d"));
+        assertEquals(t.hashCode() + "d".hashCode(), s.hashCode());
+        t.add("d");
+        assertEquals(t, s);
+        Set3a<String> u = new Set3a<String>();
+        u.transferFrom(s);
+        assertEquals(t.hashCode(), u.hashCode());
+        assertEquals(0, s.hashCode());
+        assertEquals("{}", s.toString());
+    }
+
+    /**
+     * Test for the iterator failing fast after a change to the set.
+     */
+    @Test
+    public void testIteratorConcurrentModification() {
+        Set3a<String> s = createSet3a("a", "b", "c");
+        Iterator<String> it = s.iterator();
+        assertEquals("a", it.next());
+        s.add("d");
+        boolean thrown = false;
+        try {
+            it.next();
+        } catch (ConcurrentModificationException e) {
+            thrown = true;
+        }
+        assertEquals(true, thrown);
+    }
+
+    /**
+     * Test for sequential and parallel streams.
+     */
+    @Test
+    public void testStreamLarge() {
+        final int n = 100000;
+        Set3a<String> s = Set3a
+                .fromSorted(IntStream.range(0, n).mapToObj(i -> key(i)));
+        assertEquals(n, s.stream().count());
+        assertEquals(n, s.spliterator().estimateSize());
+        assertEquals(
+                IntStream.range(0, n).mapToObj(i -> key(i))
+                        .collect(Collectors.toList()),
+                s.parallelStream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Writes {@code s} with {@code codec} and returns the bytes written.
+     *
+     * @param <T>
+     *            type of the elements
+     * @param s
+     *            the set to write
+     * @param codec
+     *            the encoding of the elements
+     * @return the bytes written
+     * @throws IOException
+     *             if writing fails
+     */
+    private static <T extends Comparable<T>> byte[] serialize(Set3a<T> s,
+            Set3aCodec<T> codec) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        s.writeTo(Channels.newChannel(out), codec);
+        return out.toByteArray();
+    }
+
+    /**
+     * Test for writeTo and readFrom with length-prefixed elements.
+     *
+     * @throws IOException
+     *             if serialization fails
+     */
+    @Test
+    public void testSerializeStrings() throws IOException {
+        Set3a<String> s = createSet3a("", "b", "\u00e9t\u00e9", "zz");
+        Set3a<String> sExpected = createSet3a("", "b", "\u00e9t\u00e9", "zz");
+        byte[] bytes = serialize(s, Set3aCodec.strings());
+        Set3a<String> t = Set3a.readFrom(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                Set3aCodec.strings());
+        assertEquals(sExpected, s);
+        assertEquals(sExpected, t);
+    }
+
+    /**
+     * Test for writeTo and readFrom with fixed-width elements, large case.
+     *
+     * @throws IOException
+     *             if serialization fails
+     */
+    @Test
+    public void testSerializeLarge() throws IOException {
+        final int n = 100000;
+        Set3a<Integer> s = Set3a
+                .fromSorted(IntStream.range(0, n).boxed());
+        byte[] bytes = serialize(s, Set3aCodec.integers());
+        assertEquals(4 * Integer.BYTES + n * Integer.BYTES + Integer.BYTES,
+                bytes.length);
+        Set3a<Integer> t = Set3a.readFrom(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                Set3aCodec.integers());
+        assertEquals(n, t.size());
+        assertEquals(n - 1, t.rank(n - 1));
+        assertEquals(Integer.valueOf(n / 2), t.select(n / 2));
+    }
+
+    /**
+     * Test for readFrom on corrupted input.
+     *
+     * @throws IOException
+     *             if serialization fails
+     */
+    @Test
+    public void testSerializeCorrupted() throws IOException {
+        Set3a<String> s = createSet3a("a", "b", "c");
+        byte[] bytes = serialize(s, Set3aCodec.strings());
+        bytes[bytes.length - Integer.BYTES - 1] = (byte) 'x';
+        boolean thrown = false;
+        try {
+            Set3a.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                    Set3aCodec.strings());
+        } catch (IOException e) {
+            thrown = true;
+        }
+        assertEquals(true, thrown);
+    }
+
+    /**
+     * Test for readFrom on a corrupted length prefix, which must be rejected
+     * before a buffer of that length is allocated.
+     *
+     * @throws IOException
+     *             if serialization fails
+     */
+    @Test
+    public void testSerializeCorruptedLength() throws IOException {
+        Set3a<String> s = createSet3a("a", "b", "c");
+        byte[] bytes = serialize(s, Set3aCodec.strings());
+        ByteBuffer.wrap(bytes).putInt(4 * Integer.BYTES, Integer.MAX_VALUE);
+        String message = null;
+        try {
+            Set3a.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                    Set3aCodec.strings());
+        } catch (IOException e) {
+            message = e.getMessage();
+        }
+        assertEquals("Invalid element length " + Integer.MAX_VALUE, message);
+    }
+
+    /**
+     * Test that readFrom leaves a file channel just past the set, so that
+     * what follows it can still be read.
+     *
+     * @throws IOException
+     *             if the file cannot be used
+     */
+    @Test
+    public void testSerializeFollowedByData() throws IOException {
+        Set3a<String> s = createSet3a("a", "b", "c");
+        byte[] bytes = serialize(s, Set3aCodec.strings());
+        Path file = Files.createTempFile("Set3aTest", null);
+        try {
+            Files.write(file, bytes);
+            Files.write(file, new byte[] { 42 }, StandardOpenOption.APPEND);
+            try (FileChannel in = FileChannel.open(file)) {
+                Set3a<String> t = Set3a.readFrom(in, Set3aCodec.strings());
+                assertEquals(s, t);
+                assertEquals(bytes.length, in.position());
+                ByteBuffer rest = ByteBuffer.allocate(2);
+                assertEquals(1, in.read(rest));
+                assertEquals(42, rest.get(0));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Integer element counting the calls to its compareTo.
+     */
+    private static final class Counted implements Comparable<Counted> {
+
+        /**
+         * Number of calls to compareTo so far.
+         */
+        private static int comparisons = 0;
+
+        /**
+         * The value.
+         */
+        private final int value;
+
+        /**
+         * Constructor.
+         *
+         * @param value
+         *            the value
+         */
+        Counted(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Counted other) {
+            comparisons++;
+            return Integer.compare(this.value, other.value);
+        }
+
+    }
+
+    /**
+     * Test that the metrics count exactly the comparisons and allocations
+     * made, with no extra walks of the tree; uses the methods without
+     * assertions on membership, which would compare as well.
+     */
+    @Test
+    public void testMetricsCountsExact() {
+        final int n = 1000;
+        Set3a<Counted> s = new Set3a<Counted>();
+        Set3aMetrics metrics = s.enableMetrics();
+        Counted.comparisons = 0;
+        for (int i = 0; i < n; i++) {
+            s.addIfAbsent(new Counted((i * 7919) % n));
+        }
+        s.addIfAbsent(new Counted(0));
+        for (int i = 0; i < 2 * n; i += 3) {
+            s.contains(new Counted(i));
+        }
+        for (int i = 0; i < n; i += 2) {
+            s.removeIfPresent(new Counted(i));
+        }
+        assertEquals(Counted.comparisons, metrics.getComparisons());
+        assertEquals(n, metrics.getNodeAllocations());
+        assertEquals(true,
+                metrics.getNodesVisited() >= metrics.getComparisons());
+    }
+
+    /**
+     * Test for the metrics of kernel operations.
+     */
+    @Test
+    public void testMetrics() {
+        final int n = 1023;
+        Set3a<String> s = new Set3a<String>();
+        Set3aMetrics metrics = s.enableMetrics();
+        for (int i = 0; i < n; i++) {
+            s.add(key(i));
+        }
+        s.contains(key(n));
+        s.remove(key(0));
+        s.removeAny();
+        assertEquals(n + 3, metrics.getOperations());
+        assertEquals(n, metrics.getNodeAllocations());
+        /*
+         * A perfectly balanced tree of n = 2^10 - 1 nodes has height 10, and
+         * an AVL tree is at most about 1.44 times higher.
+         */
+        assertEquals(true, metrics.getMaxDepth() <= 15);
+        long depths = 0;
+        for (long count : metrics.getDepthHistogram()) {
+            depths += count;
+        }
+        assertEquals(n + 3, depths);
+        long adds = 0;
+        for (long count : metrics.getAddLatencyHistogram()) {
+            adds += count;
+        }
+        assertEquals(n, adds);
+        metrics.reset();
+        s.disableMetrics();
+        s.contains(key(1));
+        assertEquals(0, metrics.getOperations());
+        assertEquals(0.0, metrics.getMeanDepth(), 0.0);
+    }
+
+    /**
+     * Test for reading metrics through JMX.
+     *
+     * @throws JMException
+     *             if registration or lookup fails
+     */
+    @Test
+    public void testMetricsJmx() throws JMException {
+        Set3a<String> s = createSet3a("a", "b", "c");
+        ObjectName name = s.enableMetrics().register("testMetricsJmx");
+        try {
+            s.contains("b");
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(name, "Operations"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
 }
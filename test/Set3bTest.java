@@ -0,0 +1,58 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3b}.
+ */
+public class Set3bTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3b<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for a large set, spanning several levels of nodes, built in
+     * scrambled order and then partly emptied, checking membership and
+     * in-order iteration along the way.
+     */
+    @Test
+    public void testLarge() {
+        final int n = 100000;
+        final int step = 7919;
+        Set3b<Integer> s = new Set3b<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add((int) ((long) i * step % n));
+        }
+        assertEquals(n, s.size());
+        for (int i = 0; i < n; i += 3) {
+            assertEquals(i, s.remove(i).intValue());
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(i % 3 != 0, s.contains(i));
+        }
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            if (i % 3 != 0) {
+                assertEquals(i, it.next().intValue());
+            }
+        }
+        assertEquals(false, it.hasNext());
+        while (s.size() > 0) {
+            s.removeAny();
+        }
+        assertEquals(false, s.iterator().hasNext());
+    }
+
+}
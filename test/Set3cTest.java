@@ -0,0 +1,219 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3c}.
+ */
+public class Set3cTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3c<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for floor and ceiling.
+     */
+    @Test
+    public void testFloorCeiling() {
+        Set3c<String> s = new Set3c<String>();
+        s.add("b");
+        s.add("d");
+        s.add("f");
+        assertEquals("d", s.floor("e"));
+        assertEquals("d", s.floor("d"));
+        assertEquals(null, s.floor("a"));
+        assertEquals("f", s.ceiling("e"));
+        assertEquals(null, s.ceiling("g"));
+    }
+
+    /**
+     * Test for lower and higher, which exclude the bound itself.
+     */
+    @Test
+    public void testLowerHigher() {
+        Set3c<String> s = new Set3c<String>();
+        s.add("b");
+        s.add("d");
+        s.add("f");
+        assertEquals("b", s.lower("d"));
+        assertEquals("d", s.lower("e"));
+        assertEquals(null, s.lower("b"));
+        assertEquals("f", s.higher("d"));
+        assertEquals("d", s.higher("c"));
+        assertEquals(null, s.higher("f"));
+    }
+
+    /**
+     * Test for subSet, with the lower bound inclusive and the upper bound
+     * exclusive.
+     */
+    @Test
+    public void testSubSet() {
+        Set3c<Integer> s = new Set3c<Integer>();
+        for (int i = 0; i < 100; i += 2) {
+            s.add(i);
+        }
+        assertEquals(Arrays.asList(10, 12, 14), s.subSet(10, 16));
+        assertEquals(Arrays.asList(10, 12, 14, 16), s.subSet(9, 17));
+        assertEquals(Arrays.asList(), s.subSet(11, 12));
+        assertEquals(Arrays.asList(), s.subSet(20, 20));
+        assertEquals(Arrays.asList(0, 2), s.subSet(-5, 3));
+        assertEquals(Arrays.asList(96, 98), s.subSet(95, 1000));
+        assertEquals(50, s.subSet(0, 100).size());
+    }
+
+    /**
+     * Test for subSet while a writer adds and removes the odd keys: each
+     * range read must hold exactly the even keys in range, in order, plus
+     * some odd ones, as the tree was at one instant.
+     *
+     * @throws InterruptedException
+     *             if interrupted while joining the threads
+     */
+    @Test
+    public void testSubSetWithConcurrentWriter() throws InterruptedException {
+        final int n = 2000;
+        final int rounds = 20;
+        final Set3c<Integer> s = new Set3c<Integer>();
+        for (int i = 0; i < n; i += 2) {
+            s.add(i);
+        }
+        final boolean[] wrong = new boolean[1];
+        Thread reader = new Thread(() -> {
+            for (int r = 0; r < rounds * 10; r++) {
+                int from = (r * 37) % (n / 2);
+                List<Integer> range = s.subSet(from, from + n / 2);
+                int even = 0;
+                for (int k = 0; k < range.size(); k++) {
+                    int x = range.get(k);
+                    if (x < from || x >= from + n / 2
+                            || (k > 0 && range.get(k - 1) >= x)) {
+                        wrong[0] = true;
+                    }
+                    if (x % 2 == 0) {
+                        even++;
+                    }
+                }
+                if (even != n / 4) {
+                    wrong[0] = true;
+                }
+            }
+        });
+        Thread writer = new Thread(() -> {
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 1; i < n; i += 2) {
+                    s.add(i);
+                }
+                for (int i = 1; i < n; i += 2) {
+                    s.remove(i);
+                }
+            }
+        });
+        reader.start();
+        writer.start();
+        reader.join();
+        writer.join();
+        assertEquals(false, wrong[0]);
+    }
+
+    /**
+     * Test for readers running while writers add and remove elements: keys
+     * that are never removed must always be found.
+     *
+     * @throws InterruptedException
+     *             if interrupted while joining the threads
+     */
+    @Test
+    public void testConcurrentReadersAndWriters() throws InterruptedException {
+        final int n = 2000;
+        final int rounds = 20;
+        final Set3c<Integer> s = new Set3c<Integer>();
+        for (int i = 0; i < n; i += 2) {
+            s.add(i);
+        }
+        final boolean[] missed = new boolean[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    for (int i = 0; i < n; i += 2) {
+                        if (!s.contains(i)) {
+                            missed[0] = true;
+                        }
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 1; i < n; i += 2) {
+                    s.add(i);
+                }
+                for (int i = 1; i < n; i += 2) {
+                    s.remove(i);
+                }
+            }
+        }));
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(false, missed[0]);
+        assertEquals(n / 2, s.size());
+    }
+
+    /**
+     * Test for transfers between two sets in opposite directions at the same
+     * time, which must not deadlock.
+     *
+     * @throws InterruptedException
+     *             if interrupted while joining the threads
+     */
+    @Test
+    public void testOppositeTransfers() throws InterruptedException {
+        final int rounds = 100000;
+        final long timeoutMillis = 30000;
+        final Set3c<Integer> a = new Set3c<Integer>();
+        final Set3c<Integer> b = new Set3c<Integer>();
+        a.add(1);
+        Thread ab = new Thread(() -> {
+            for (int r = 0; r < rounds; r++) {
+                b.transferFrom(a);
+            }
+        });
+        Thread ba = new Thread(() -> {
+            for (int r = 0; r < rounds; r++) {
+                a.transferFrom(b);
+            }
+        });
+        ab.setDaemon(true);
+        ba.setDaemon(true);
+        ab.start();
+        ba.start();
+        ab.join(timeoutMillis);
+        ba.join(timeoutMillis);
+        assertEquals(false, ab.isAlive() || ba.isAlive());
+        /*
+         * A transfer from an empty set empties the other one, so the element
+         * survives only if the last transfer moved it.
+         */
+        assertEquals(true, a.size() + b.size() <= 1);
+    }
+
+}
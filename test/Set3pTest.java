@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3p}.
+ */
+public class Set3pTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3p<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for snapshot staying unchanged while the original is updated, and
+     * the other way around.
+     */
+    @Test
+    public void testSnapshot() {
+        Set3p<String> s = new Set3p<String>();
+        s.add("b");
+        s.add("a");
+        s.add("c");
+        Set3p<String> snap = s.snapshot();
+        s.remove("a");
+        s.add("d");
+        snap.add("e");
+        Set<String> sExpected = this.constructorRef();
+        sExpected.add("b");
+        sExpected.add("c");
+        sExpected.add("d");
+        Set<String> snapExpected = this.constructorRef();
+        snapExpected.add("a");
+        snapExpected.add("b");
+        snapExpected.add("c");
+        snapExpected.add("e");
+        assertEquals(sExpected, s);
+        assertEquals(snapExpected, snap);
+    }
+
+    /**
+     * Test for an iterator walking the version of the set from when it was
+     * created, while the set is being emptied.
+     */
+    @Test
+    public void testIteratorDuringUpdates() {
+        final int n = 1000;
+        Set3p<Integer> s = new Set3p<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        Iterator<Integer> it = s.iterator();
+        int expected = 0;
+        while (it.hasNext()) {
+            assertEquals(expected, it.next().intValue());
+            s.removeAny();
+            expected++;
+        }
+        assertEquals(n, expected);
+        assertEquals(0, s.size());
+    }
+
+}
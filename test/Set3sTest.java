@@ -0,0 +1,100 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3s}.
+ */
+public class Set3sTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3s<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for a large set built in increasing order, which makes the splay
+     * tree a path, then emptied in decreasing order.
+     */
+    @Test
+    public void testSortedLarge() {
+        final int n = 100000;
+        Set3s<Integer> s = new Set3s<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, it.next().intValue());
+        }
+        assertEquals(false, it.hasNext());
+        assertEquals(true, s.contains(0));
+        assertEquals(false, s.contains(n));
+        for (int i = n - 1; i >= 0; i--) {
+            assertEquals(i, s.remove(i).intValue());
+        }
+        assertEquals(0, s.size());
+    }
+
+    /**
+     * Test for removeAny, contains and remove interleaved against
+     * {@code Set1L}.
+     */
+    @Test
+    public void testMixedAgainstReference() {
+        final int n = 2000;
+        Set3s<Integer> s = new Set3s<Integer>();
+        Set<Integer> sExpected = new Set1L<Integer>();
+        for (int i = 0; i < n; i++) {
+            Integer x = (i * 7919) % n;
+            s.add(x);
+            sExpected.add(x);
+        }
+        for (int i = 0; i < n / 2; i++) {
+            Integer x = (i * 31) % n;
+            assertEquals(sExpected.contains(x), s.contains(x));
+            if (sExpected.contains(x)) {
+                assertEquals(x, s.remove(x));
+                sExpected.remove(x);
+            } else {
+                Integer y = s.removeAny();
+                sExpected.remove(y);
+            }
+        }
+        assertEquals(sExpected, s);
+    }
+
+    /**
+     * Test for iteration interleaved with contains, which splays the tree
+     * between the steps of the iterator.
+     */
+    @Test
+    public void testIteratorWithContains() {
+        final int n = 20;
+        Set3s<Integer> s = new Set3s<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add((i * 7) % n);
+        }
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(true, s.contains((i * 13) % n));
+            assertEquals(true, it.hasNext());
+            assertEquals(false, s.contains(n + i));
+            assertEquals(i, it.next().intValue());
+            assertEquals(true, s.contains(i));
+        }
+        assertEquals(false, it.hasNext());
+        assertEquals(n, s.size());
+    }
+
+}